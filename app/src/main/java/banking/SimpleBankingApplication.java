@@ -0,0 +1,2007 @@
+package banking;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.border.CompoundBorder;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.plaf.basic.ComboPopup;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SimpleBankingApplication extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final Color BG = new Color(0x0F172A);
+    private static final Color PANEL = new Color(0x111827);
+    private static final Color CARD = new Color(0x111C33);
+    private static final Color BORDER = new Color(0x22304A);
+    private static final Color TEXT = new Color(0xE5E7EB);
+    private static final Color MUTED = new Color(0x9CA3AF);
+    private static final Color ACCENT = new Color(0x38BDF8);
+    private static final Color GOOD = new Color(0x22C55E);
+    private static final Color WARN = new Color(0xF59E0B);
+    private static final Color BAD = new Color(0xEF4444);
+
+    /**
+     * Renders a raw centavo balance. The table model hands over the number and the
+     * text is only produced while painting, straight from a {@link PesoFormatter}
+     * buffer via {@code drawChars}, so no Strings are created per cell.
+     */
+    static class BalanceCellRenderer extends JComponent implements TableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private static final int PADDING = 8;
+
+        private final PesoFormatter formatter = new PesoFormatter();
+        private final Map<?, ?> textHints =
+                (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        private long cents;
+
+        BalanceCellRenderer() {
+            setOpaque(true);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            cents = value instanceof Number ? ((Number) value).longValue() : 0L;
+            setFont(table.getFont());
+            setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+            setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+            setBorder(hasFocus ? UIManager.getBorder("Table.focusCellHighlightBorder") : null);
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+
+            if (textHints != null) ((Graphics2D) g).addRenderingHints(textHints);
+            g.setFont(getFont());
+            g.setColor(getForeground());
+            FontMetrics fm = g.getFontMetrics();
+            formatter.format(cents);
+            int width = fm.charsWidth(formatter.chars(), formatter.offset(), formatter.length());
+            int y = (getHeight() - fm.getHeight()) / 2 + fm.getAscent();
+            g.drawChars(formatter.chars(), formatter.offset(), formatter.length(), getWidth() - PADDING - width, y);
+        }
+
+        // Same shortcuts as DefaultTableCellRenderer: a rubber stamp never needs these.
+        @Override public void invalidate() {}
+        @Override public void validate() {}
+        @Override public void revalidate() {}
+        @Override public void repaint(long tm, int x, int y, int width, int height) {}
+        @Override public void repaint(Rectangle r) {}
+        @Override public void repaint() {}
+        @Override protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {}
+        @Override public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {}
+    }
+
+    /**
+     * Hands work from any thread to the Event Dispatch Thread with at most one
+     * {@code invokeLater} per frame. Producers keep their own pending state,
+     * register a drain for it and call {@link #requestFlush()}; every registered
+     * drain then runs together in the next frame.
+     */
+    static final class FrameCoalescer implements Coalescer {
+        private static final long FRAME_NANOS = 16_666_667L;
+
+        private final List<Runnable> drains = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "frame-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+        private volatile long lastFlush = System.nanoTime() - FRAME_NANOS;
+
+        @Override
+        public void register(Runnable drain) { drains.add(drain); }
+
+        @Override
+        public void requestFlush() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            long wait = lastFlush + FRAME_NANOS - System.nanoTime();
+            if (wait <= 0) SwingUtilities.invokeLater(this::flush);
+            else timer.schedule(() -> SwingUtilities.invokeLater(this::flush), wait, TimeUnit.NANOSECONDS);
+        }
+
+        private void flush() {
+            lastFlush = System.nanoTime();
+            // Cleared first: a drain may open a modal dialog, and the frames after it must still flow.
+            scheduled.set(false);
+            for (Runnable drain : drains) drain.run();
+        }
+
+        /**
+         * Wraps a Swing store listener so its callbacks always run on the Event
+         * Dispatch Thread. Events from other threads are collected and delivered
+         * in the next frame; a balance that changes many times in one frame is
+         * reported once, and a large burst turns into a single reload.
+         */
+        AccountStore.Listener onEdt(AccountStore.Listener target) {
+            return new EdtListener(target, this);
+        }
+
+        private static final class EdtListener implements AccountStore.Listener {
+            private static final int MAX_ROW_EVENTS = 256;
+
+            private final AccountStore.Listener target;
+            private final FrameCoalescer frames;
+            private final Queue<BankAccount> created = new ConcurrentLinkedQueue<>();
+            private final Set<BankAccount> changed = ConcurrentHashMap.newKeySet();
+            private final AtomicBoolean reload = new AtomicBoolean();
+
+            EdtListener(AccountStore.Listener target, FrameCoalescer frames) {
+                this.target = target;
+                this.frames = frames;
+                frames.register(this::drain);
+            }
+
+            @Override
+            public void accountCreated(BankAccount acc) {
+                if (SwingUtilities.isEventDispatchThread()) {
+                    target.accountCreated(acc);
+                } else {
+                    created.add(acc);
+                    frames.requestFlush();
+                }
+            }
+
+            @Override
+            public void balanceChanged(BankAccount acc) {
+                if (SwingUtilities.isEventDispatchThread()) {
+                    target.balanceChanged(acc);
+                } else {
+                    changed.add(acc);
+                    frames.requestFlush();
+                }
+            }
+
+            @Override
+            public void accountsChanged() {
+                if (SwingUtilities.isEventDispatchThread()) {
+                    target.accountsChanged();
+                } else {
+                    reload.set(true);
+                    frames.requestFlush();
+                }
+            }
+
+            private void drain() {
+                if (reload.getAndSet(false) || created.size() + changed.size() > MAX_ROW_EVENTS) {
+                    // The store is read live on reload, so it also covers whatever is cleared here.
+                    created.clear();
+                    changed.clear();
+                    target.accountsChanged();
+                    return;
+                }
+                for (BankAccount acc; (acc = created.poll()) != null; ) target.accountCreated(acc);
+                for (Iterator<BankAccount> it = changed.iterator(); it.hasNext(); ) {
+                    BankAccount acc = it.next();
+                    it.remove();
+                    target.balanceChanged(acc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Notices when the Event Dispatch Thread stops responding. A daemon thread
+     * posts a heartbeat to the EDT and checks on it every {@link #CHECK_MILLIS}.
+     * If a heartbeat waits longer than the threshold, the EDT's stack is logged
+     * once, while it is still stuck, so the log shows what blocked it. When the
+     * heartbeat finally runs, the whole stall is logged and recorded as
+     * {@link Metrics.Kind#EDT_STALL}.
+     */
+    static final class EdtWatchdog {
+        private static final long CHECK_MILLIS = 50;
+
+        private final Metrics metrics;
+        private final long thresholdNanos;
+        /** When the heartbeat in flight was posted, or 0 if none is. */
+        private volatile long postedAt;
+        private volatile Thread edt;
+        private boolean reported;
+
+        EdtWatchdog(Metrics metrics, long thresholdMillis) {
+            this.metrics = metrics;
+            this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        }
+
+        void start() {
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        check();
+                        Thread.sleep(CHECK_MILLIS);
+                    }
+                } catch (InterruptedException ignored) {}
+            }, "edt-watchdog");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private void check() {
+            long posted = postedAt;
+            long now = System.nanoTime();
+            if (posted == 0) {
+                reported = false;
+                postedAt = now;
+                SwingUtilities.invokeLater(this::beat);
+            } else if (!reported && now - posted > thresholdNanos) {
+                reported = true;
+                StringBuilder sb = new StringBuilder("EDT stalled for over ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(now - posted)).append(" ms, at:");
+                Thread t = edt;
+                if (t != null) for (StackTraceElement frame : t.getStackTrace()) sb.append("\n\tat ").append(frame);
+                System.err.println(sb);
+            }
+        }
+
+        private void beat() {
+            edt = Thread.currentThread();
+            long waited = System.nanoTime() - postedAt;
+            if (waited > thresholdNanos) {
+                metrics.record(Metrics.Kind.EDT_STALL, waited);
+                System.err.println("EDT stall ended after " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms.");
+            }
+            postedAt = 0;
+        }
+    }
+
+    /**
+     * Table model that reads rows straight from the account store's sorted index, so
+     * nothing is copied and cells are formatted on demand for the rows the table
+     * actually paints. Store events update the one affected row instead of
+     * reloading the table.
+     *
+     * <p>With a name filter set, the rows are the ids the store's name index returned
+     * for it, at most {@link #MAX_MATCHES} of them. When accounts are added the
+     * search is run again, once per flush of the coalescer however many were
+     * added, so new matches show up.
+     *
+     * <p>The row count is the model's own, kept on the EDT: other threads add
+     * accounts to the store before their insert events arrive, and JTable must
+     * never see more rows than it has been told about.
+     */
+    static class AccountsTableModel extends AbstractTableModel implements AccountStore.Listener {
+        private static final long serialVersionUID = 1L;
+        static final int MAX_MATCHES = 10_000;
+        private static final String[] COLUMNS = {"Account No.", "Name", "Balance"};
+
+        private final AccountStore store;
+        private final Coalescer frames;
+        private String filter;
+        private boolean prefix;
+        private int[] matches;
+        /** Unfiltered rows announced to the table so far. */
+        private int rows;
+        /** Set when accounts were added under a filter; the search runs in the next flush. */
+        private boolean filterStale;
+
+        AccountsTableModel(AccountStore store, Coalescer frames) {
+            this.store = store;
+            this.frames = frames;
+            rows = store.size();
+            frames.register(this::refilter);
+        }
+
+        void reload() {
+            filterStale = false;
+            if (filter != null) matches = store.searchNames(filter, prefix, MAX_MATCHES);
+            rows = store.size();
+            fireTableDataChanged();
+        }
+
+        private void refilter() {
+            if (filterStale) reload();
+        }
+
+        /** Shows only accounts whose name contains (or starts with) {@code text}; null shows all. */
+        void setNameFilter(String text, boolean prefix) {
+            this.filter = text == null || text.isEmpty() ? null : text;
+            this.prefix = prefix;
+            if (filter == null) matches = null;
+            reload();
+        }
+
+        boolean isFiltered() { return matches != null; }
+
+        BankAccount accountAt(int row) {
+            return matches == null ? store.accountAt(row) : store.accountById(matches[row]);
+        }
+
+        /** Row of the account, or a negative value if it is not shown. */
+        int rowOf(BankAccount acc) {
+            if (matches == null) {
+                int rank = store.rankOf(acc.getAccNo());
+                return rank < rows ? rank : -1;
+            }
+            int row = Arrays.binarySearch(matches, store.idOf(acc.getAccNo()));
+            return row >= 0 ? row : -1;
+        }
+
+        @Override
+        public void accountCreated(BankAccount acc) {
+            if (matches != null) {
+                if (!filterStale) {
+                    filterStale = true;
+                    frames.requestFlush();
+                }
+                return;
+            }
+            // The store may already hold accounts whose events are still on their way,
+            // which can put this one past the rows announced so far.
+            rows++;
+            int row = Math.min(store.rankOf(acc.getAccNo()), rows - 1);
+            fireTableRowsInserted(row, row);
+        }
+
+        @Override
+        public void balanceChanged(BankAccount acc) {
+            int row = rowOf(acc);
+            if (row >= 0) fireTableRowsUpdated(row, row);
+        }
+
+        @Override
+        public void accountsChanged() { reload(); }
+
+        @Override
+        public int getRowCount() { return matches == null ? rows : matches.length; }
+
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+
+        @Override
+        public String getColumnName(int col) { return COLUMNS[col]; }
+
+        @Override
+        public Class<?> getColumnClass(int col) { return col == 2 ? Long.class : String.class; }
+
+        /** The balance column holds raw centavos; {@link BalanceCellRenderer} formats them at paint time. */
+        @Override
+        public Object getValueAt(int row, int col) {
+            BankAccount acc = accountAt(row);
+            switch (col) {
+                case 0: return acc.getAccNo();
+                case 1: return acc.getName();
+                default: return acc.getBalance();
+            }
+        }
+    }
+
+    /**
+     * Combo box model over the store's sorted index, narrowed to the account
+     * numbers that start with a prefix. The matching range comes from two rank
+     * lookups, and items are read only when the popup paints them, so filtering
+     * takes the same few milliseconds however many accounts there are.
+     */
+    static class AccountComboModel extends AbstractListModel<String>
+            implements ComboBoxModel<String>, AccountStore.Listener {
+        private static final long serialVersionUID = 1L;
+
+        private final AccountStore store;
+        private String prefix = "";
+        private int from;
+        private int to;
+        private Object selected;
+
+        AccountComboModel(AccountStore store) {
+            this.store = store;
+        }
+
+        String prefix() { return prefix; }
+
+        /** Shows only the account numbers starting with {@code prefix}; the selection is kept. */
+        void filter(String prefix) {
+            this.prefix = prefix;
+            reload();
+        }
+
+        void reload() {
+            int[] range = store.prefixRange(prefix);
+            from = range[0];
+            to = range[1];
+            fireContentsChanged(this, 0, Math.max(0, to - from - 1));
+        }
+
+        /** Position of the account number in the filtered list, or -1. */
+        int indexOf(Object item) {
+            if (!(item instanceof String)) return -1;
+            int rank = store.rankOf((String) item);
+            return rank >= from && rank < to ? rank - from : -1;
+        }
+
+        @Override
+        public int getSize() { return to - from; }
+
+        @Override
+        public String getElementAt(int i) { return store.accNoAt(from + i); }
+
+        @Override
+        public Object getSelectedItem() { return selected; }
+
+        @Override
+        public void setSelectedItem(Object item) {
+            if (Objects.equals(selected, item)) return;
+            selected = item;
+            fireContentsChanged(this, -1, -1);
+        }
+
+        @Override
+        public void accountCreated(BankAccount acc) {
+            // Any new account before the range shifts it, so look the range up again.
+            int[] range = store.prefixRange(prefix);
+            from = range[0];
+            to = range[1];
+            int i = indexOf(acc.getAccNo());
+            if (i >= 0) fireIntervalAdded(this, i, i);
+        }
+
+        @Override
+        public void balanceChanged(BankAccount acc) {}
+
+        @Override
+        public void accountsChanged() { reload(); }
+    }
+
+    /**
+     * One page of an account's statement, newest entry first. The rows are read
+     * straight from the packed entries {@link TransactionHistory#read} returned;
+     * dates are only formatted for the rows the table paints. Money taken out of
+     * the account shows as a negative amount.
+     */
+    static class StatementTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private static final String[] COLUMNS = {"Date", "Type", "Amount", "Balance"};
+        private static final DateTimeFormatter WHEN =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+        private long[] entries = new long[0];
+
+        /** Shows entries in the order the history returns them, oldest first, as rows newest first. */
+        void setEntries(long[] entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() { return entries.length / TransactionHistory.WORDS; }
+
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+
+        @Override
+        public String getColumnName(int col) { return COLUMNS[col]; }
+
+        @Override
+        public Class<?> getColumnClass(int col) { return col >= 2 ? Long.class : String.class; }
+
+        @Override
+        public Object getValueAt(int row, int col) {
+            int i = getRowCount() - 1 - row;
+            int type = TransactionHistory.type(entries, i);
+            switch (col) {
+                case 0: return WHEN.format(Instant.ofEpochMilli(TransactionHistory.time(entries, i)));
+                case 1: return TransactionHistory.typeName(type);
+                case 2:
+                    long amount = TransactionHistory.amount(entries, i);
+                    return type == TransactionHistory.WITHDRAW || type == TransactionHistory.TRANSFER_OUT ? -amount : amount;
+                default: return TransactionHistory.balance(entries, i);
+            }
+        }
+    }
+
+    /**
+     * Editable account picker: typing narrows the popup to the matching account
+     * numbers, and typing a whole number selects that account. It needs
+     * {@link AccountComboModel} because the stock combo box finds the selected
+     * index by scanning every item, and sizes its popup list the same way.
+     */
+    static class AccountSelector extends JComboBox<String> {
+        private static final long serialVersionUID = 1L;
+        private static final String PROTOTYPE = "0000000000000000";
+
+        AccountSelector(AccountComboModel model) {
+            super(model);
+            setEditable(true);
+            setPrototypeDisplayValue(PROTOTYPE);
+            fixPopupCellSize();
+
+            JTextField field = (JTextField) getEditor().getEditorComponent();
+            field.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) { SwingUtilities.invokeLater(() -> typed(field)); }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) { SwingUtilities.invokeLater(() -> typed(field)); }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {}
+            });
+            addPopupMenuListener(new PopupMenuListener() {
+                @Override
+                public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                    // Opened with the arrow rather than by typing: show everything again.
+                    if (!model.prefix().isEmpty() && field.getText().equals(getSelectedItem())) model.filter("");
+                }
+
+                @Override
+                public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {}
+
+                @Override
+                public void popupMenuCanceled(PopupMenuEvent e) {}
+            });
+        }
+
+        @Override
+        public int getSelectedIndex() { return model().indexOf(getSelectedItem()); }
+
+        @Override
+        public void updateUI() {
+            super.updateUI();
+            fixPopupCellSize();
+        }
+
+        private void typed(JTextField field) {
+            String text = field.getText();
+            // The editor also changes when an item is picked; only react to typing.
+            if (text.equals(getSelectedItem()) || !field.isFocusOwner()) return;
+            // The typed text becomes the selection, or the editor would be reset to the old one.
+            setSelectedItem(text);
+            model().filter(text.trim());
+            if (!isShowing()) return;
+            hidePopup();
+            if (model().getSize() > 0) showPopup();
+        }
+
+        /** The model is set before the UI is installed, so this also works during construction. */
+        private AccountComboModel model() { return (AccountComboModel) getModel(); }
+
+        /** Gives the popup list fixed cell sizes, so it never measures every item. */
+        private void fixPopupCellSize() {
+            Object popup = getUI().getAccessibleChild(this, 0);
+            if (popup instanceof ComboPopup)
+                ((ComboPopup) popup).getList().setPrototypeCellValue(PROTOTYPE);
+        }
+    }
+
+    private static final Path DATA_DIR = Paths.get(System.getProperty("bank.data.dir", "bank-data"));
+    private static final long CHECKPOINT_MINUTES = Long.getLong("bank.checkpoint.minutes", 5);
+    private static final long EDT_STALL_MILLIS = Long.getLong("bank.edt.stall.ms", 200);
+    private static final int STATEMENT_PAGE = 50;
+    private static final int LEADERBOARD_SIZE = 10;
+
+    private final Bank bank;
+    private final AccountStore store;
+    private final Ledger ledger;
+    private final Metrics metrics;
+    private final TransactionHistory history;
+    private final FrameCoalescer frames = new FrameCoalescer();
+    private final TransactionEngine engine;
+
+    private final AccountComboModel comboModel;
+    private final AccountSelector accountCombo;
+    private final JLabel statusLabel = new JLabel("Ready.");
+    private final JLabel statusPill = new JLabel(" OK ");
+    private final JLabel metricsLabel = new JLabel();
+    private LatencyHistogram.Counts lastTransactions;
+    private long lastMetricsAt;
+    private final JLabel nameValue = new JLabel("—");
+    private final JLabel accValue = new JLabel("—");
+    private final JLabel balValue = new JLabel("₱0.00");
+    private final JLabel largestValue = new JLabel("—");
+
+    private final AccountsTableModel tableModel;
+    private final JTextField nameSearch = new JTextField();
+    private JTable table;
+
+    /** Set while the combo box and the table update each other, to break the feedback loop. */
+    private boolean syncingSelection;
+
+    /** A window on {@code bank}; closing the window closes the bank. */
+    public SimpleBankingApplication(Bank bank) {
+        super("Simple Banking Application (Pro GUI)");
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setSize(1120, 660);
+        setLocationRelativeTo(null);
+        setResizable(false);
+
+        this.bank = bank;
+        store = bank.store();
+        ledger = bank.ledger();
+        metrics = bank.metrics();
+        history = bank.history();
+        comboModel = new AccountComboModel(store);
+        accountCombo = new AccountSelector(comboModel);
+        tableModel = new AccountsTableModel(store, frames);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                bank.close();
+            }
+        });
+
+        applySwingLook();
+        buildUI();
+        store.addListener(frames.onEdt(tableModel));
+        store.addListener(frames.onEdt(comboModel));
+        store.addListener(frames.onEdt(new AccountStore.Listener() {
+            @Override
+            public void accountCreated(BankAccount acc) {}
+
+            @Override
+            public void balanceChanged(BankAccount acc) {
+                if (acc.getAccNo().equals(accountCombo.getSelectedItem()))
+                    balValue.setText(Money.format(acc.getBalance()));
+            }
+
+            @Override
+            public void accountsChanged() {
+                updateSelectedAccountDetails();
+            }
+        }));
+        Thread names = new Thread(() -> {
+            store.buildNameIndex();
+            SwingUtilities.invokeLater(() -> {
+                if (!nameSearch.getText().isBlank()) applyNameFilter();
+            });
+        }, "name-index");
+        names.setDaemon(true);
+        names.start();
+        // Registered after the listeners, so a callback sees the rows its batch added.
+        engine = new TransactionEngine(ledger, store, frames, metrics,
+                Math.max(2, Runtime.getRuntime().availableProcessors()), this::showBatchSummary);
+        bank.closeWith(engine);
+        refreshAccountsUI();
+
+        new EdtWatchdog(metrics, EDT_STALL_MILLIS).start();
+        lastTransactions = metrics.transactions();
+        lastMetricsAt = System.nanoTime();
+        new Timer(1000, e -> {
+            updateMetricsLabel();
+            updateLargestAccount();
+        }).start();
+        updateLargestAccount();
+    }
+
+    private void applySwingLook() {
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception ignored) {}
+
+        UIManager.put("OptionPane.background", PANEL);
+        UIManager.put("Panel.background", PANEL);
+        UIManager.put("OptionPane.messageForeground", TEXT);
+        UIManager.put("OptionPane.foreground", TEXT);
+    }
+
+    private void buildUI() {
+        JPanel root = new JPanel(new BorderLayout(0, 0));
+        root.setBackground(BG);
+        setContentPane(root);
+
+        root.add(new GradientHeader(), BorderLayout.NORTH);
+
+        JPanel body = new JPanel(new BorderLayout(14, 14));
+        body.setBorder(new EmptyBorder(14, 14, 14, 14));
+        body.setBackground(BG);
+        root.add(body, BorderLayout.CENTER);
+
+        JPanel sidebar = cardPanel();
+        sidebar.setPreferredSize(new Dimension(260, 0));
+        sidebar.setLayout(new BoxLayout(sidebar, BoxLayout.Y_AXIS));
+        sidebar.setBorder(new EmptyBorder(14, 14, 14, 14));
+
+        JLabel sideTitle = label("ACTIONS", 12, MUTED, true);
+        sideTitle.setAlignmentX(Component.LEFT_ALIGNMENT);
+        sidebar.add(sideTitle);
+        sidebar.add(Box.createVerticalStrut(12));
+
+        RoundedButton btnCreate = new RoundedButton("Create Account", ACCENT);
+        RoundedButton btnDeposit = new RoundedButton("Deposit", new Color(0x60A5FA));
+        RoundedButton btnWithdraw = new RoundedButton("Withdraw", WARN);
+        RoundedButton btnBalance = new RoundedButton("Check Balance", new Color(0xA78BFA));
+        RoundedButton btnAll = new RoundedButton("View All", new Color(0x34D399));
+        RoundedButton btnImport = new RoundedButton("Import CSV", new Color(0x22D3EE));
+        RoundedButton btnEndOfDay = new RoundedButton("End of Day", new Color(0xF472B6));
+        RoundedButton btnExit = new RoundedButton("Exit", BAD);
+
+        for (RoundedButton b : List.of(btnCreate, btnDeposit, btnWithdraw, btnBalance, btnAll, btnImport, btnEndOfDay,
+                btnExit)) {
+            b.setAlignmentX(Component.LEFT_ALIGNMENT);
+            b.setMaximumSize(new Dimension(Integer.MAX_VALUE, 44));
+            sidebar.add(b);
+            sidebar.add(Box.createVerticalStrut(10));
+        }
+
+        body.add(sidebar, BorderLayout.WEST);
+
+        JPanel content = new JPanel(new BorderLayout(14, 14));
+        content.setBackground(BG);
+
+        JPanel topBar = cardPanel();
+        topBar.setLayout(new BorderLayout(10, 10));
+        topBar.setBorder(new EmptyBorder(12, 12, 12, 12));
+
+        JPanel selector = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        selector.setOpaque(false);
+        selector.add(label("Select Account:", 13, MUTED, false));
+
+        accountCombo.setPreferredSize(new Dimension(220, 30));
+        styleCombo(accountCombo);
+
+        RoundedButton refreshBtn = new RoundedButton("Refresh", new Color(0x64748B));
+        refreshBtn.setPreferredSize(new Dimension(110, 34));
+
+        selector.add(accountCombo);
+        selector.add(refreshBtn);
+
+        topBar.add(selector, BorderLayout.WEST);
+
+        JPanel quickInfo = new JPanel(new GridLayout(1, 4, 10, 0));
+        quickInfo.setOpaque(false);
+        quickInfo.add(infoTile("Account No.", accValue));
+        quickInfo.add(infoTile("Name", nameValue));
+        quickInfo.add(infoTile("Balance", balValue));
+        quickInfo.add(infoTile("Largest Account", largestValue));
+
+        largestValue.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        largestValue.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) { showBalanceStats(); }
+        });
+
+        topBar.add(quickInfo, BorderLayout.CENTER);
+
+        content.add(topBar, BorderLayout.NORTH);
+
+        JPanel tableCard = cardPanel();
+        tableCard.setLayout(new BorderLayout());
+        tableCard.setBorder(new EmptyBorder(12, 12, 12, 12));
+
+        JLabel tableTitle = label("ACCOUNTS", 12, MUTED, true);
+        JPanel tableHeader = new JPanel(new BorderLayout(10, 0));
+        tableHeader.setOpaque(false);
+        tableHeader.setBorder(new EmptyBorder(0, 0, 8, 0));
+        tableHeader.add(tableTitle, BorderLayout.WEST);
+
+        JPanel search = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        search.setOpaque(false);
+        search.add(label("Find name:", 12, MUTED, false));
+        nameSearch.setPreferredSize(new Dimension(220, 28));
+        nameSearch.setToolTipText("Part of a customer name. Start with ^ to match the beginning.");
+        nameSearch.setBackground(PANEL);
+        nameSearch.setForeground(TEXT);
+        nameSearch.setCaretColor(TEXT);
+        nameSearch.setBorder(new CompoundBorder(new LineBorder(BORDER, 1, true), new EmptyBorder(2, 6, 2, 6)));
+        search.add(nameSearch);
+        tableHeader.add(search, BorderLayout.EAST);
+        tableCard.add(tableHeader, BorderLayout.NORTH);
+
+        table = new JTable(tableModel) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                metrics.recordSince(Metrics.Kind.RENDER, start);
+            }
+        };
+        table.setDefaultRenderer(Long.class, new BalanceCellRenderer());
+        styleTable(table);
+
+        JScrollPane sp = new JScrollPane(table);
+        sp.setBorder(new LineBorder(BORDER, 1, true));
+        sp.getViewport().setBackground(PANEL);
+        tableCard.add(sp, BorderLayout.CENTER);
+
+        content.add(tableCard, BorderLayout.CENTER);
+
+        JPanel footer = cardPanel();
+        footer.setBorder(new EmptyBorder(10, 12, 10, 12));
+        footer.setLayout(new BorderLayout(10, 0));
+
+        statusLabel.setForeground(TEXT);
+
+        statusPill.setOpaque(true);
+        statusPill.setBackground(GOOD);
+        statusPill.setForeground(Color.WHITE);
+        statusPill.setBorder(new EmptyBorder(4, 10, 4, 10));
+
+        metricsLabel.setForeground(MUTED);
+        metricsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        metricsLabel.setToolTipText("Transactions in the last second. Click to save all metrics to a file.");
+        metricsLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        metricsLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) { saveMetrics(); }
+        });
+
+        JPanel footerRight = new JPanel(new FlowLayout(FlowLayout.RIGHT, 12, 0));
+        footerRight.setOpaque(false);
+        footerRight.add(metricsLabel);
+        footerRight.add(statusPill);
+
+        footer.add(statusLabel, BorderLayout.WEST);
+        footer.add(footerRight, BorderLayout.EAST);
+
+        content.add(footer, BorderLayout.SOUTH);
+
+        body.add(content, BorderLayout.CENTER);
+
+        btnCreate.addActionListener(e -> createAccountDialog());
+        btnDeposit.addActionListener(e -> depositDialog());
+        btnWithdraw.addActionListener(e -> withdrawDialog());
+        btnBalance.addActionListener(e -> checkBalance());
+        btnAll.addActionListener(e -> showAllAccountsDialog());
+        btnImport.addActionListener(e -> importCsvDialog());
+        btnEndOfDay.addActionListener(e -> endOfDayDialog());
+        btnExit.addActionListener(e -> dispose());
+
+        refreshBtn.addActionListener(e -> refreshAccountsUI());
+        nameSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { applyNameFilter(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { applyNameFilter(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {}
+        });
+
+        accountCombo.addActionListener(e -> {
+            if (!syncingSelection) updateSelectedAccountDetails();
+        });
+
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (syncingSelection || e.getValueIsAdjusting() || table.getSelectedRow() < 0) return;
+            BankAccount acc = tableModel.accountAt(table.convertRowIndexToModel(table.getSelectedRow()));
+            syncingSelection = true;
+            try {
+                accountCombo.setSelectedItem(acc.getAccNo());
+            } finally {
+                syncingSelection = false;
+            }
+            showAccountDetails(acc);
+        });
+    }
+
+    private JPanel cardPanel() {
+        JPanel p = new JPanel();
+        p.setBackground(CARD);
+        p.setBorder(new LineBorder(BORDER, 1, true));
+        return p;
+    }
+
+    private JLabel label(String text, int size, Color color, boolean bold) {
+        JLabel l = new JLabel(text);
+        l.setForeground(color);
+        l.setFont(new Font("Segoe UI", bold ? Font.BOLD : Font.PLAIN, size));
+        return l;
+    }
+
+    private JPanel infoTile(String title, JLabel valueLabel) {
+        JPanel tile = new JPanel(new BorderLayout(6, 6));
+        tile.setOpaque(false);
+
+        JLabel t = label(title, 12, MUTED, true);
+
+        valueLabel.setForeground(TEXT);
+        valueLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+
+        tile.add(t, BorderLayout.NORTH);
+        tile.add(valueLabel, BorderLayout.CENTER);
+        return tile;
+    }
+
+    private void styleCombo(JComboBox<String> combo) {
+        combo.setBackground(PANEL);
+        combo.setForeground(TEXT);
+        combo.setBorder(new LineBorder(BORDER, 1, true));
+        combo.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        if (combo.isEditable()) {
+            JTextField field = (JTextField) combo.getEditor().getEditorComponent();
+            field.setBackground(PANEL);
+            field.setForeground(TEXT);
+            field.setCaretColor(TEXT);
+        }
+    }
+
+    private void styleTable(JTable t) {
+        t.setRowHeight(30);
+        t.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        t.setForeground(TEXT);
+        t.setBackground(PANEL);
+        t.setGridColor(BORDER);
+        t.setSelectionBackground(new Color(0x1D4ED8));
+        t.setSelectionForeground(Color.WHITE);
+
+        t.getTableHeader().setReorderingAllowed(false);
+        t.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
+        t.getTableHeader().setBackground(new Color(0x0B1220));
+        t.getTableHeader().setForeground(TEXT);
+        t.getTableHeader().setBorder(new LineBorder(BORDER, 1, true));
+    }
+
+    private void setStatus(String msg, Color pillColor, String pillText) {
+        statusLabel.setText(msg);
+        statusPill.setText(" " + pillText + " ");
+        statusPill.setBackground(pillColor);
+    }
+
+    private void refreshAccountsUI() {
+        long start = System.nanoTime();
+        String prev = (String) accountCombo.getSelectedItem();
+
+        tableModel.reload();
+        comboModel.filter("");
+        int count = store.size();
+
+        if (count > 0) {
+            if (prev != null && store.contains(prev)) accountCombo.setSelectedItem(prev);
+            else accountCombo.setSelectedItem(store.accNoAt(0));
+            updateSelectedAccountDetails();
+            setStatus("Loaded " + count + " account(s).", GOOD, "OK");
+        } else {
+            accValue.setText("—");
+            nameValue.setText("—");
+            balValue.setText("₱0.00");
+            setStatus("No accounts yet. Create an account to begin.", WARN, "INFO");
+        }
+        metrics.recordSince(Metrics.Kind.REFRESH, start);
+    }
+
+    /** Shows the transaction rate and latency over the time since the last update. */
+    private void updateMetricsLabel() {
+        LatencyHistogram.Counts now = metrics.transactions();
+        long at = System.nanoTime();
+        LatencyHistogram.Counts recent = now.since(lastTransactions);
+        double seconds = (at - lastMetricsAt) / 1e9;
+        lastTransactions = now;
+        lastMetricsAt = at;
+        if (recent.count() == 0) {
+            metricsLabel.setText("0 ops/s");
+            return;
+        }
+        metricsLabel.setText(String.format("%,.0f ops/s  p50 %s ms  p99 %s ms", recent.count() / seconds,
+                Metrics.millis(recent.percentile(50)), Metrics.millis(recent.percentile(99))));
+    }
+
+    /** Shows the largest balance, read from the ledger's running stats rather than the accounts. */
+    private void updateLargestAccount() {
+        List<BalanceStats.Leader> top = ledger.largest(1);
+        if (top == null) {
+            largestValue.setText("Calculating…");
+            largestValue.setToolTipText("The balance stats are being worked out in the background.");
+            return;
+        }
+        if (top.isEmpty()) {
+            largestValue.setText("—");
+            largestValue.setToolTipText(null);
+            return;
+        }
+        BalanceStats.Leader leader = top.get(0);
+        largestValue.setText(Money.format(leader.balance));
+        largestValue.setToolTipText(leader.accNo + ". Click for the top " + LEADERBOARD_SIZE
+                + " and totals over all accounts.");
+    }
+
+    /** Totals, balance bands and the largest accounts, all from the running stats. */
+    private void showBalanceStats() {
+        BalanceStats stats = ledger.stats();
+        List<BalanceStats.Leader> largest = ledger.largest(LEADERBOARD_SIZE);
+        List<BalanceStats.Leader> smallest = ledger.smallest(1);
+        if (largest == null || smallest == null || !stats.isReady()) {
+            JOptionPane.showMessageDialog(this, "The balance stats are still being calculated. Try again in a moment.",
+                    "Balance Stats", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        long[] bands = stats.bands();
+
+        StringBuilder sb = new StringBuilder("<html>");
+        sb.append("Accounts: ").append(String.format("%,d", stats.accounts()));
+        sb.append("<br>Total balance: ").append(Money.format(stats.total()));
+        if (!smallest.isEmpty()) {
+            sb.append("<br>Smallest: ").append(Money.format(smallest.get(0).balance));
+            sb.append("&nbsp;&nbsp;Largest: ").append(Money.format(largest.get(0).balance));
+        }
+        sb.append("<br><br><b>By balance</b>");
+        long[] floors = BalanceStats.BAND_FLOORS;
+        for (int i = 0; i < floors.length; i++) {
+            sb.append("<br>");
+            if (i == 0) sb.append("Under ").append(Money.format(floors[1]));
+            else if (i == floors.length - 1) sb.append(Money.format(floors[i])).append(" and up");
+            else sb.append(Money.format(floors[i])).append(" to ").append(Money.format(floors[i + 1]));
+            sb.append(": ").append(String.format("%,d", bands[i]));
+        }
+        sb.append("<br><br><b>Largest accounts</b>");
+        for (int i = 0; i < largest.size(); i++) {
+            BalanceStats.Leader leader = largest.get(i);
+            BankAccount acc = store.get(leader.accNo);
+            sb.append("<br>").append(i + 1).append(". ").append(html(leader.accNo));
+            if (acc != null) sb.append(" (").append(html(acc.getName())).append(')');
+            sb.append(": ").append(Money.format(leader.balance));
+        }
+        sb.append("</html>");
+        JOptionPane.showMessageDialog(this, formLabel(sb.toString()), "Balance Stats", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void saveMetrics() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Save Metrics");
+        chooser.setSelectedFile(new File("metrics-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        try {
+            metrics.writeTo(file);
+            setStatus("Metrics saved to " + file.getFileName() + ".", GOOD, "OK");
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not save the metrics:\n" + ex.getMessage(),
+                    "Save Error", JOptionPane.ERROR_MESSAGE);
+            setStatus("Saving metrics failed.", BAD, "ERR");
+        }
+    }
+
+    /** Filters the table by the text in the name search box. */
+    private void applyNameFilter() {
+        String text = nameSearch.getText().trim();
+        boolean prefix = text.startsWith("^");
+        if (prefix) text = text.substring(1);
+        if (text.isEmpty()) {
+            tableModel.setNameFilter(null, false);
+            setStatus("Showing all " + store.size() + " account(s).", GOOD, "OK");
+        } else if (!store.isNameIndexBuilt()) {
+            setStatus("Still indexing names; the search will run when that is done.", WARN, "BUSY");
+            return;
+        } else {
+            long start = System.nanoTime();
+            tableModel.setNameFilter(text, prefix);
+            int found = tableModel.getRowCount();
+            String took = String.format(" (%.2f ms)", (System.nanoTime() - start) / 1e6);
+            if (found == AccountsTableModel.MAX_MATCHES)
+                setStatus("Showing the first " + found + " names matching \"" + text + "\"" + took + ".", WARN, "INFO");
+            else
+                setStatus(found + " name(s) match \"" + text + "\"" + took + ".", found > 0 ? GOOD : WARN, "OK");
+        }
+        updateSelectedAccountDetails();
+    }
+
+    private void updateSelectedAccountDetails() {
+        String accNo = (String) accountCombo.getSelectedItem();
+        if (accNo == null || accNo.isBlank() || !store.contains(accNo)) {
+            accValue.setText("—");
+            nameValue.setText("—");
+            balValue.setText("₱0.00");
+            return;
+        }
+
+        BankAccount acc = store.get(accNo);
+        showAccountDetails(acc);
+        selectAccountRow(acc);
+    }
+
+    private void showAccountDetails(BankAccount acc) {
+        accValue.setText(acc.getAccNo());
+        nameValue.setText(acc.getName());
+        balValue.setText(Money.format(acc.getBalance()));
+    }
+
+    /**
+     * Selects the account's row without scanning the table: the store's index gives
+     * the model row and the table maps it to the view row, which keeps working once
+     * the rows are sorted or filtered.
+     */
+    private void selectAccountRow(BankAccount acc) {
+        int modelRow = tableModel.rowOf(acc);
+        int viewRow = modelRow < 0 ? -1 : table.convertRowIndexToView(modelRow);
+        syncingSelection = true;
+        try {
+            if (viewRow < 0) {
+                table.clearSelection();
+                return;
+            }
+            table.setRowSelectionInterval(viewRow, viewRow);
+            table.scrollRectToVisible(table.getCellRect(viewRow, 0, true));
+        } finally {
+            syncingSelection = false;
+        }
+    }
+
+    private BankAccount getSelectedAccountOrWarn() {
+        String accNo = (String) accountCombo.getSelectedItem();
+        if (accNo == null || accNo.isBlank()) {
+            JOptionPane.showMessageDialog(this, "Please select an account first.",
+                    "No Account Selected", JOptionPane.WARNING_MESSAGE);
+            setStatus("Select an account before doing transactions.", WARN, "WARN");
+            return null;
+        }
+        BankAccount acc = store.get(accNo);
+        if (acc == null) {
+            JOptionPane.showMessageDialog(this, "Selected account not found.",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            setStatus("Account not found. Refreshing.", BAD, "ERR");
+            refreshAccountsUI();
+            return null;
+        }
+        return acc;
+    }
+
+    private void createAccountDialog() {
+        JTextField accNoField = new JTextField();
+        JTextField nameField = new JTextField();
+        JTextField balField = new JTextField("0");
+
+        JPanel panel = formPanel();
+        panel.add(formLabel("Account No.:")); panel.add(accNoField);
+        panel.add(formLabel("Name:")); panel.add(nameField);
+        panel.add(formLabel("Initial Balance:")); panel.add(balField);
+
+        int result = JOptionPane.showConfirmDialog(this, panel, "Create Account",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+
+        if (result != JOptionPane.OK_OPTION) return;
+
+        String accNo = accNoField.getText().trim();
+        String name = nameField.getText().trim();
+        String balStr = balField.getText().trim();
+
+        if (accNo.isEmpty() || name.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Account number and name are required.",
+                    "Missing", JOptionPane.WARNING_MESSAGE);
+            setStatus("Create failed: missing fields.", WARN, "WARN");
+            return;
+        }
+        if (store.contains(accNo)) {
+            JOptionPane.showMessageDialog(this, "Account number already exists.",
+                    "Duplicate", JOptionPane.ERROR_MESSAGE);
+            setStatus("Create failed: duplicate account no.", BAD, "ERR");
+            return;
+        }
+
+        long bal;
+        try {
+            bal = Money.parseCents(balStr);
+            if (bal < 0) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Initial balance must be a non-negative number.",
+                    "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            setStatus("Create failed: invalid balance.", BAD, "ERR");
+            return;
+        }
+
+        engine.submit(TransactionEngine.Op.open(accNo, name, bal, op -> {
+            if (!op.ok()) {
+                showOpError("Create", op);
+                return;
+            }
+            setStatus("Account created: " + accNo, GOOD, "OK");
+            accountCombo.setSelectedItem(accNo);
+            updateSelectedAccountDetails();
+        }));
+    }
+
+    private void depositDialog() {
+        BankAccount acc = getSelectedAccountOrWarn();
+        if (acc == null) return;
+
+        String amountStr = JOptionPane.showInputDialog(this,
+                "Deposit amount for " + acc.getAccNo() + " (" + acc.getName() + "):",
+                "Deposit", JOptionPane.PLAIN_MESSAGE);
+        if (amountStr == null) return;
+
+        long amount;
+        try {
+            amount = Money.parseCents(amountStr);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number.",
+                    "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            setStatus("Deposit failed: invalid input.", BAD, "ERR");
+            return;
+        }
+        engine.submit(TransactionEngine.Op.deposit(acc.getAccNo(), amount, op -> {
+            if (!op.ok()) {
+                showOpError("Deposit", op);
+                return;
+            }
+            JOptionPane.showMessageDialog(this,
+                    "Deposited " + Money.format(amount),
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            setStatus("Deposit successful.", GOOD, "OK");
+        }));
+    }
+
+    private void withdrawDialog() {
+        BankAccount acc = getSelectedAccountOrWarn();
+        if (acc == null) return;
+
+        String amountStr = JOptionPane.showInputDialog(this,
+                "Withdraw amount for " + acc.getAccNo() + " (" + acc.getName() + "):",
+                "Withdraw", JOptionPane.PLAIN_MESSAGE);
+        if (amountStr == null) return;
+
+        long amount;
+        try {
+            amount = Money.parseCents(amountStr);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid number.",
+                    "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            setStatus("Withdraw failed: invalid input.", BAD, "ERR");
+            return;
+        }
+        engine.submit(TransactionEngine.Op.withdraw(acc.getAccNo(), amount, op -> {
+            if (!op.ok()) {
+                showOpError("Withdraw", op);
+                return;
+            }
+            JOptionPane.showMessageDialog(this,
+                    "Withdrew " + Money.format(amount),
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            setStatus("Withdraw successful.", GOOD, "OK");
+        }));
+    }
+
+    private void showOpError(String action, TransactionEngine.Op op) {
+        if (op.unsaved) {
+            JOptionPane.showMessageDialog(this, action + " was applied, but it could not be saved to the journal."
+                            + "\nDo not enter it again. No more changes are accepted; restart the application.",
+                    "Not Saved", JOptionPane.ERROR_MESSAGE);
+            setStatus(action + " applied but not saved. Restart the application.", BAD, "ERR");
+            return;
+        }
+        JOptionPane.showMessageDialog(this, op.error, "Error", JOptionPane.ERROR_MESSAGE);
+        setStatus(action + " failed: " + op.error, BAD, "ERR");
+    }
+
+    /** Shows what the transaction engine finished in the last frame. */
+    private void showBatchSummary(TransactionEngine.Summary s) {
+        String text = (s.batches == 1 ? "Batch: " : s.batches + " batches: ")
+                + s.applied + " applied, " + s.rejected + " rejected in "
+                + String.format("%.1f ms", s.nanos / 1e6) + ".";
+        if (engine.pending() > 0) text += " " + engine.pending() + " queued.";
+        if (s.unsaved > 0) setStatus(text + " " + s.unsaved + " applied but NOT saved; restart the application.", BAD, "ERR");
+        else if (s.rejected == 0) setStatus(text, GOOD, "OK");
+        else setStatus(text + " Last error: " + s.lastError, WARN, "WARN");
+    }
+
+    private void checkBalance() {
+        BankAccount acc = getSelectedAccountOrWarn();
+        if (acc == null) return;
+
+        showStatement(acc);
+
+        setStatus("Balance checked.", new Color(0x60A5FA), "INFO");
+        updateSelectedAccountDetails();
+    }
+
+    /**
+     * The account's balance above its statement, {@link #STATEMENT_PAGE} entries
+     * at a time, newest first. Dates narrow it to a range, found by binary
+     * search in the account's history; only the page on screen is copied out.
+     */
+    private void showStatement(BankAccount acc) {
+        JLabel summary = formLabel("<html>Account: " + html(acc.getAccNo()) + "<br>Name: " + html(acc.getName())
+                + "<br>Balance: " + Money.format(acc.getBalance())
+                + (history == null ? "<br><br>This bank keeps no transaction history." : "") + "</html>");
+        summary.setBorder(new EmptyBorder(0, 0, 8, 0));
+        if (history == null) {
+            JOptionPane.showMessageDialog(this, summary, "Balance and Statement", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JTextField fromField = new JTextField(9);
+        JTextField toField = new JTextField(9);
+        fromField.setToolTipText("yyyy-mm-dd; leave empty for no start");
+        toField.setToolTipText("yyyy-mm-dd, inclusive; leave empty for no end");
+        JButton apply = new JButton("Apply");
+        JLabel rangeError = formLabel("");
+        rangeError.setForeground(BAD);
+
+        StatementTableModel model = new StatementTableModel();
+        JTable entries = new JTable(model);
+        entries.setDefaultRenderer(Long.class, new BalanceCellRenderer());
+        styleTable(entries);
+        JScrollPane sp = new JScrollPane(entries);
+        sp.setPreferredSize(new Dimension(560, 320));
+        sp.getViewport().setBackground(PANEL);
+
+        JLabel pageLabel = formLabel("");
+        JButton newest = new JButton("Newest");
+        JButton newer = new JButton("Newer");
+        JButton older = new JButton("Older");
+        JButton oldest = new JButton("Oldest");
+
+        // range = {start, end} entry positions; page 0 is the newest entries in it
+        int[][] range = {history.range(acc.getAccNo(), Long.MIN_VALUE, Long.MAX_VALUE)};
+        int[] page = {0};
+        Runnable show = () -> {
+            int total = range[0][1] - range[0][0];
+            int pages = Math.max(1, (total + STATEMENT_PAGE - 1) / STATEMENT_PAGE);
+            page[0] = Math.max(0, Math.min(page[0], pages - 1));
+            int hi = range[0][1] - page[0] * STATEMENT_PAGE;
+            int lo = Math.max(range[0][0], hi - STATEMENT_PAGE);
+            model.setEntries(history.read(acc.getAccNo(), lo, hi));
+            pageLabel.setText(total == 0 ? "No entries"
+                    : String.format("%,d-%,d of %,d", range[0][1] - hi + 1, range[0][1] - lo, total)
+                    + (bank.isHistoryComplete() ? "" : " (earlier history still loading)"));
+            newest.setEnabled(page[0] > 0);
+            newer.setEnabled(page[0] > 0);
+            older.setEnabled(page[0] < pages - 1);
+            oldest.setEnabled(page[0] < pages - 1);
+        };
+        apply.addActionListener(e -> {
+            try {
+                long from = fromField.getText().isBlank() ? Long.MIN_VALUE : startOfDay(fromField.getText().trim(), 0);
+                long to = toField.getText().isBlank() ? Long.MAX_VALUE : startOfDay(toField.getText().trim(), 1);
+                rangeError.setText("");
+                range[0] = history.range(acc.getAccNo(), from, to);
+                page[0] = 0;
+                show.run();
+            } catch (DateTimeParseException ex) {
+                rangeError.setText("Use dates like 2024-01-31.");
+            }
+        });
+        newest.addActionListener(e -> { page[0] = 0; show.run(); });
+        newer.addActionListener(e -> { page[0]--; show.run(); });
+        older.addActionListener(e -> { page[0]++; show.run(); });
+        oldest.addActionListener(e -> { page[0] = Integer.MAX_VALUE; show.run(); });
+        show.run();
+
+        JPanel filter = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        filter.setOpaque(false);
+        filter.setBorder(new EmptyBorder(0, 0, 8, 0));
+        filter.add(formLabel("From"));
+        filter.add(fromField);
+        filter.add(formLabel("To"));
+        filter.add(toField);
+        filter.add(apply);
+        filter.add(rangeError);
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.setOpaque(false);
+        top.add(summary, BorderLayout.NORTH);
+        top.add(filter, BorderLayout.SOUTH);
+
+        JPanel nav = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        nav.setOpaque(false);
+        nav.setBorder(new EmptyBorder(8, 0, 0, 0));
+        nav.add(newest);
+        nav.add(newer);
+        nav.add(pageLabel);
+        nav.add(older);
+        nav.add(oldest);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(PANEL);
+        panel.add(top, BorderLayout.NORTH);
+        panel.add(sp, BorderLayout.CENTER);
+        panel.add(nav, BorderLayout.SOUTH);
+
+        JOptionPane.showMessageDialog(this, panel, "Balance and Statement", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /** Epoch milliseconds at the start of {@code date} plus {@code days}, in the local time zone. */
+    private static long startOfDay(String date, int days) {
+        return LocalDate.parse(date).plusDays(days).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Shows the report a page at a time; only the page on screen is ever turned
+     * into text. Every page shows balances as of when the dialog opened. Export
+     * writes the whole report, as of when it starts, to a file in the background.
+     */
+    private void showAllAccountsDialog() {
+        if (store.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No accounts to show.",
+                    "Info", JOptionPane.INFORMATION_MESSAGE);
+            setStatus("No accounts to show.", WARN, "INFO");
+            return;
+        }
+
+        JTextArea area = new JTextArea(16, 46);
+        area.setEditable(false);
+        area.setBackground(PANEL);
+        area.setForeground(TEXT);
+        area.setFont(new Font("Consolas", Font.PLAIN, 13));
+        area.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JLabel pageLabel = formLabel("");
+        JButton first = new JButton("First");
+        JButton prev = new JButton("Previous");
+        JButton next = new JButton("Next");
+        JButton last = new JButton("Last");
+        JButton export = new JButton("Export...");
+        JProgressBar exporting = new JProgressBar();
+        exporting.setVisible(false);
+
+        Versions.View view = ledger.view();
+        int accounts = view.size();
+        int[] page = {0};
+        Runnable show = () -> {
+            int pages = AccountsReport.pageCount(accounts);
+            page[0] = Math.max(0, Math.min(page[0], pages - 1));
+            area.setText(AccountsReport.page(store, view, page[0]));
+            area.setCaretPosition(0);
+            pageLabel.setText("Page " + (page[0] + 1) + " of " + pages + "  (" + accounts + " accounts)");
+            first.setEnabled(page[0] > 0);
+            prev.setEnabled(page[0] > 0);
+            next.setEnabled(page[0] < pages - 1);
+            last.setEnabled(page[0] < pages - 1);
+        };
+        first.addActionListener(e -> { page[0] = 0; show.run(); });
+        prev.addActionListener(e -> { page[0]--; show.run(); });
+        next.addActionListener(e -> { page[0]++; show.run(); });
+        last.addActionListener(e -> { page[0] = Integer.MAX_VALUE; show.run(); });
+        export.addActionListener(e -> exportReport(export, exporting));
+        show.run();
+
+        JPanel nav = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        nav.setOpaque(false);
+        nav.add(first);
+        nav.add(prev);
+        nav.add(pageLabel);
+        nav.add(next);
+        nav.add(last);
+        JPanel tools = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        tools.setOpaque(false);
+        tools.add(exporting);
+        tools.add(export);
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setOpaque(false);
+        footer.setBorder(new EmptyBorder(8, 0, 0, 0));
+        footer.add(nav, BorderLayout.WEST);
+        footer.add(tools, BorderLayout.EAST);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(PANEL);
+        panel.add(new JScrollPane(area), BorderLayout.CENTER);
+        panel.add(footer, BorderLayout.SOUTH);
+
+        try {
+            JOptionPane.showMessageDialog(this, panel,
+                    "All Accounts", JOptionPane.INFORMATION_MESSAGE);
+        } finally {
+            view.close();
+        }
+
+        setStatus("Displayed all accounts.", new Color(0x34D399), "OK");
+    }
+
+    private void exportReport(JButton export, JProgressBar bar) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export All Accounts");
+        chooser.setSelectedFile(new File("accounts-report.txt"));
+        if (chooser.showSaveDialog(export) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+
+        int total = store.size();
+        export.setEnabled(false);
+        bar.setMaximum(Math.max(1, total));
+        bar.setValue(0);
+        bar.setVisible(true);
+        setStatus("Exporting " + total + " account(s)...", new Color(0x34D399), "BUSY");
+
+        new SwingWorker<Long, Long>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (Versions.View view = ledger.view()) {
+                    return AccountsReport.export(view, file, this::publish);
+                }
+            }
+
+            @Override
+            protected void process(List<Long> rows) {
+                bar.setValue((int) Math.min(rows.get(rows.size() - 1), bar.getMaximum()));
+            }
+
+            @Override
+            protected void done() {
+                bar.setVisible(false);
+                export.setEnabled(true);
+                try {
+                    long rows = get();
+                    setStatus("Exported " + rows + " account(s) to " + file.getFileName() + ".", GOOD, "OK");
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(export, "Could not export the report:\n" + cause.getMessage(),
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                    setStatus("Export failed.", BAD, "ERR");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Picks a CSV file and imports it on a background thread, with a progress
+     * dialog that can cancel between chunks. The rejected rows are listed at the end.
+     */
+    private void importCsvDialog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import CSV");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+
+        Object[] kinds = {"Accounts (accNo, name, balance)", "Transactions (accNo, deposit/withdraw, amount)"};
+        int choice = JOptionPane.showOptionDialog(this, "What does " + file.getFileName() + " contain?",
+                "Import CSV", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, kinds, kinds[0]);
+        if (choice < 0) return;
+        CsvImporter.Kind kind = choice == 0 ? CsvImporter.Kind.ACCOUNTS : CsvImporter.Kind.TRANSACTIONS;
+
+        CsvImporter importer = new CsvImporter(ledger, store);
+        JProgressBar bar = new JProgressBar(0, 1000);
+        bar.setStringPainted(true);
+        JLabel counts = formLabel("Starting...");
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(e -> {
+            cancel.setEnabled(false);
+            importer.cancel();
+        });
+
+        JPanel panel = formPanel();
+        panel.add(formLabel("Importing " + file.getFileName()));
+        panel.add(bar);
+        panel.add(counts);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.setOpaque(false);
+        buttons.add(cancel);
+        panel.add(buttons);
+
+        JDialog progressDialog = new JDialog(this, "Import CSV", false);
+        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        progressDialog.setContentPane(panel);
+        progressDialog.setSize(420, 180);
+        progressDialog.setLocationRelativeTo(this);
+        progressDialog.setVisible(true);
+        setStatus("Importing " + file.getFileName() + "...", new Color(0x22D3EE), "BUSY");
+
+        new SwingWorker<CsvImporter.Result, long[]>() {
+            @Override
+            protected CsvImporter.Result doInBackground() throws Exception {
+                return importer.run(file, kind, (read, total, applied, rejected) ->
+                        publish(new long[]{read, total, applied, rejected}));
+            }
+
+            @Override
+            protected void process(List<long[]> updates) {
+                long[] u = updates.get(updates.size() - 1);
+                bar.setValue(u[1] == 0 ? 1000 : (int) (u[0] * 1000 / u[1]));
+                counts.setText(u[2] + " applied, " + u[3] + " rejected");
+            }
+
+            @Override
+            protected void done() {
+                progressDialog.dispose();
+                refreshAccountsUI();
+                CsvImporter.Result r;
+                try {
+                    r = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(SimpleBankingApplication.this,
+                            "Import stopped:\n" + cause.getMessage(), "Import Error", JOptionPane.ERROR_MESSAGE);
+                    setStatus("Import failed.", BAD, "ERR");
+                    return;
+                }
+                showImportReport(file, r);
+            }
+        }.execute();
+    }
+
+    private void showImportReport(Path file, CsvImporter.Result r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.stopped != null ? "IMPORT STOPPED\n" : r.cancelled ? "IMPORT CANCELLED\n" : "IMPORT COMPLETE\n");
+        sb.append("---------------\n");
+        if (r.stopped != null) sb.append(r.stopped).append("\n\n");
+        sb.append("Applied:  ").append(r.applied).append('\n');
+        sb.append("Rejected: ").append(r.rejected).append('\n');
+        if (!r.rejects.isEmpty()) {
+            sb.append("\nREJECTED ROWS\n");
+            for (String line : r.rejects) sb.append(line).append('\n');
+            if (r.rejected > r.rejects.size())
+                sb.append("... and ").append(r.rejected - r.rejects.size()).append(" more\n");
+        }
+
+        JTextArea area = new JTextArea(sb.toString(), 16, 46);
+        area.setEditable(false);
+        area.setBackground(PANEL);
+        area.setForeground(TEXT);
+        area.setCaretPosition(0);
+        area.setFont(new Font("Consolas", Font.PLAIN, 13));
+        area.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JOptionPane.showMessageDialog(this, new JScrollPane(area),
+                "Import " + file.getFileName(), JOptionPane.INFORMATION_MESSAGE);
+
+        String summary = "Imported " + r.applied + " row(s), rejected " + r.rejected + ".";
+        if (r.stopped != null) setStatus("Import stopped. " + summary, BAD, "ERR");
+        else if (r.cancelled) setStatus("Import cancelled. " + summary, WARN, "WARN");
+        else if (r.rejected > 0) setStatus(summary, WARN, "WARN");
+        else setStatus(summary, GOOD, "OK");
+    }
+
+    /**
+     * Asks for the day's rates and runs {@link EndOfDay} on a background thread,
+     * with a progress dialog that can cancel between ranges. Tellers can keep
+     * working meanwhile.
+     */
+    private void endOfDayDialog() {
+        JTextField interestField = new JTextField("2.50");
+        JTextField feeField = new JTextField("0");
+        JTextField waivedField = new JTextField("10000");
+
+        JPanel form = formPanel();
+        form.add(formLabel("Interest (% a year, paid daily):")); form.add(interestField);
+        form.add(formLabel("Maintenance fee:")); form.add(feeField);
+        form.add(formLabel("No fee from balance:")); form.add(waivedField);
+
+        if (JOptionPane.showConfirmDialog(this, form, "End of Day",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+
+        EndOfDay.Rates rates;
+        try {
+            // Two decimals of a percent are basis points, which is what parseCents gives.
+            rates = new EndOfDay.Rates(Money.parseCents(interestField.getText()),
+                    Money.parseCents(feeField.getText()), Money.parseCents(waivedField.getText()));
+        } catch (IllegalArgumentException ex) {
+            String message = ex instanceof NumberFormatException ? "Enter valid numbers." : ex.getMessage();
+            JOptionPane.showMessageDialog(this, message, "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            setStatus("End of day not run: invalid input.", BAD, "ERR");
+            return;
+        }
+
+        EndOfDay run = new EndOfDay(ledger, rates);
+        JProgressBar bar = new JProgressBar(0, 1000);
+        bar.setStringPainted(true);
+        JLabel counts = formLabel("Starting...");
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(e -> {
+            cancel.setEnabled(false);
+            run.cancel();
+        });
+
+        JPanel panel = formPanel();
+        panel.add(formLabel("Applying interest and fees"));
+        panel.add(bar);
+        panel.add(counts);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.setOpaque(false);
+        buttons.add(cancel);
+        panel.add(buttons);
+
+        JDialog progressDialog = new JDialog(this, "End of Day", false);
+        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        progressDialog.setContentPane(panel);
+        progressDialog.setSize(420, 180);
+        progressDialog.setLocationRelativeTo(this);
+        progressDialog.setVisible(true);
+        setStatus("Running end of day...", new Color(0xF472B6), "BUSY");
+
+        new SwingWorker<EndOfDay.Result, long[]>() {
+            @Override
+            protected EndOfDay.Result doInBackground() {
+                return run.run((processed, total) -> publish(new long[]{processed, total}));
+            }
+
+            @Override
+            protected void process(List<long[]> updates) {
+                long[] u = updates.get(updates.size() - 1);
+                bar.setValue(u[1] == 0 ? 1000 : (int) (u[0] * 1000 / u[1]));
+                counts.setText(String.format("%,d of %,d accounts", u[0], u[1]));
+            }
+
+            @Override
+            protected void done() {
+                progressDialog.dispose();
+                EndOfDay.Result r;
+                try {
+                    r = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(SimpleBankingApplication.this,
+                            "End of day stopped:\n" + cause.getMessage(), "End of Day Error", JOptionPane.ERROR_MESSAGE);
+                    setStatus("End of day failed.", BAD, "ERR");
+                    return;
+                }
+                showEndOfDayReport(r);
+            }
+        }.execute();
+    }
+
+    private void showEndOfDayReport(EndOfDay.Result r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.cancelled ? "END OF DAY CANCELLED\n" : "END OF DAY COMPLETE\n");
+        sb.append("-------------------\n");
+        sb.append(String.format("Accounts:  %,d%n", r.accounts));
+        sb.append(String.format("Interest:  %s to %,d account(s)%n", Money.format(r.interest), r.credited));
+        sb.append(String.format("Fees:      %s from %,d account(s)%n", Money.format(r.fees), r.debited));
+        if (r.failed > 0) sb.append(String.format("Failed:    %,d%n", r.failed));
+        sb.append(String.format("Time:      %.1f ms%n", r.nanos / 1e6));
+        sb.append("Checksum:  ").append(r.checksumHex()).append('\n');
+
+        JTextArea area = new JTextArea(sb.toString(), 9, 46);
+        area.setEditable(false);
+        area.setBackground(PANEL);
+        area.setForeground(TEXT);
+        area.setFont(new Font("Consolas", Font.PLAIN, 13));
+        area.setBorder(new EmptyBorder(10, 10, 10, 10));
+        JOptionPane.showMessageDialog(this, area, "End of Day", JOptionPane.INFORMATION_MESSAGE);
+
+        String summary = String.format("End of day: %,d account(s), checksum %s.", r.accounts, r.checksumHex());
+        if (r.cancelled || r.failed > 0) setStatus(summary, WARN, "WARN");
+        else setStatus(summary, GOOD, "OK");
+    }
+
+    private JPanel formPanel() {
+        JPanel p = new JPanel(new GridLayout(0, 1, 6, 6));
+        p.setBackground(PANEL);
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        return p;
+    }
+
+    private JLabel formLabel(String text) {
+        JLabel l = new JLabel(text);
+        l.setForeground(TEXT);
+        l.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        return l;
+    }
+
+    /**
+     * {@code text} made safe to put in an {@code <html>} label, so names and
+     * account numbers typed in, imported or sent to the API show as written.
+     */
+    private static String html(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static class RoundedButton extends JButton {
+        private static final long serialVersionUID = 1L;
+
+        private final Color fill;
+
+        RoundedButton(String text, Color fill) {
+            super(text);
+            this.fill = fill;
+            setForeground(Color.WHITE);
+            setFont(new Font("Segoe UI", Font.BOLD, 13));
+            setFocusPainted(false);
+            setBorderPainted(false);
+            setContentAreaFilled(false);
+            setOpaque(false);
+            setCursor(new Cursor(Cursor.HAND_CURSOR));
+            setBorder(new EmptyBorder(10, 16, 10, 16));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            Color c = fill;
+            if (getModel().isPressed()) c = c.darker();
+            else if (getModel().isRollover()) c = c.brighter();
+
+            g2.setColor(c);
+            g2.fillRoundRect(0, 0, getWidth(), getHeight(), 18, 18);
+
+            FontMetrics fm = g2.getFontMetrics();
+            int x = (getWidth() - fm.stringWidth(getText())) / 2;
+            int y = (getHeight() - fm.getHeight()) / 2 + fm.getAscent();
+            g2.setColor(getForeground());
+            g2.drawString(getText(), x, y);
+
+            g2.dispose();
+        }
+    }
+
+    class GradientHeader extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        GradientHeader() {
+            setPreferredSize(new Dimension(0, 78));
+            setBorder(new EmptyBorder(14, 16, 14, 16));
+            setLayout(new BorderLayout());
+            setOpaque(false);
+
+            JLabel title = new JLabel("Simple Banking Application");
+            title.setForeground(Color.WHITE);
+            title.setFont(new Font("Segoe UI", Font.BOLD, 20));
+
+            JLabel subtitle = new JLabel("Create accounts, deposit, withdraw, and view balances");
+            subtitle.setForeground(new Color(255, 255, 255, 200));
+            subtitle.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+
+            JPanel left = new JPanel();
+            left.setOpaque(false);
+            left.setLayout(new BoxLayout(left, BoxLayout.Y_AXIS));
+            left.add(title);
+            left.add(Box.createVerticalStrut(4));
+            left.add(subtitle);
+
+            add(left, BorderLayout.WEST);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            GradientPaint gp = new GradientPaint(
+                    0, 0, new Color(0x2563EB), // blue-600
+                    getWidth(), getHeight(), new Color(0x06B6D4) // cyan-500
+            );
+            g2.setPaint(gp);
+            g2.fillRoundRect(10, 10, getWidth() - 20, getHeight() - 20, 20, 20);
+
+            g2.dispose();
+            super.paintComponent(g);
+        }
+    }
+
+    /**
+     * Starts the window. {@code --serve [port]} also starts the local HTTP API on
+     * the same accounts, and {@code --headless [port]} starts only the API. The
+     * port defaults to {@code bank.http.port}, or 8080.
+     */
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "";
+        if (mode.equals("--soak")) {
+            try {
+                System.exit(LoadGenerator.run(args, CHECKPOINT_MINUTES) ? 0 : 1);
+            } catch (IllegalArgumentException bad) {
+                System.err.println("Invalid soak test setting: " + bad.getMessage());
+                System.exit(2);
+            }
+        }
+        String portText = args.length > 1 ? args[1] : System.getProperty("bank.http.port", "8080");
+        int port;
+        try {
+            port = Integer.parseInt(portText.trim());
+            if (port < 0 || port > 65535) throw new NumberFormatException();
+        } catch (NumberFormatException bad) {
+            System.err.println("Invalid port: " + portText);
+            System.err.println("Usage: [--serve | --headless] [port], or --soak [seconds]");
+            System.exit(2);
+            return;
+        }
+        if (mode.equals("--headless")) {
+            Bank bank = Bank.open(DATA_DIR, CHECKPOINT_MINUTES, new Bank.Problems() {
+                @Override
+                public void checkpointUnreadable(IOException cause) {
+                    System.err.println("Could not read the last checkpoint, replaying the full journal: " + cause);
+                }
+
+                @Override
+                public void journalUnavailable(Exception cause) {
+                    System.err.println("Could not open the transaction journal, changes will not be saved: " + cause);
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(bank::close, "bank-shutdown"));
+            try {
+                HttpApi api = HttpApi.start(bank, port);
+                System.out.println("Serving " + bank.store().size() + " account(s) on http://localhost:" + api.port() + "/accounts");
+            } catch (IOException ex) {
+                System.err.println("Could not start the HTTP API: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        boolean serve = mode.equals("--serve");
+        SwingUtilities.invokeLater(() -> {
+            JWindow opening = openingWindow();
+            List<Runnable> problems = new ArrayList<>();
+            new SwingWorker<Bank, Void>() {
+                @Override
+                protected Bank doInBackground() {
+                    return Bank.open(DATA_DIR, CHECKPOINT_MINUTES, new Bank.Problems() {
+                        @Override
+                        public void checkpointUnreadable(IOException cause) {
+                            problems.add(() -> JOptionPane.showMessageDialog(null,
+                                    "Could not read the last checkpoint:\n" + cause.getMessage()
+                                            + "\n\nThe full transaction journal was replayed instead.",
+                                    "Checkpoint Error", JOptionPane.WARNING_MESSAGE));
+                        }
+
+                        @Override
+                        public void journalUnavailable(Exception cause) {
+                            problems.add(() -> JOptionPane.showMessageDialog(null,
+                                    "Could not open the transaction journal:\n" + cause.getMessage()
+                                            + "\n\nChanges made in this session will not be saved.",
+                                    "Journal Error", JOptionPane.ERROR_MESSAGE));
+                        }
+                    });
+                }
+
+                @Override
+                protected void done() {
+                    opening.dispose();
+                    Bank bank;
+                    try {
+                        bank = get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(null, "Could not open the accounts:\n" + cause,
+                                "Startup Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    SimpleBankingApplication app = new SimpleBankingApplication(bank);
+                    app.setVisible(true);
+                    problems.forEach(Runnable::run);
+                    if (!serve) return;
+                    try {
+                        HttpApi api = HttpApi.start(bank, port);
+                        app.setStatus("HTTP API listening on http://localhost:" + api.port() + "/accounts", GOOD, "API");
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(app, "Could not start the HTTP API:\n" + ex.getMessage(),
+                                "HTTP API", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        });
+    }
+
+    /**
+     * Shown at once while the bank opens in the background, so replaying a long
+     * journal never holds up the first paint or the event thread.
+     */
+    private static JWindow openingWindow() {
+        JLabel label = new JLabel("Opening accounts…");
+        label.setForeground(TEXT);
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBackground(PANEL);
+        panel.setBorder(new CompoundBorder(new LineBorder(BORDER), new EmptyBorder(16, 20, 16, 20)));
+        panel.add(label, BorderLayout.NORTH);
+        panel.add(bar, BorderLayout.CENTER);
+        JWindow window = new JWindow();
+        window.setContentPane(panel);
+        window.pack();
+        window.setLocationRelativeTo(null);
+        window.setVisible(true);
+        return window;
+    }
+}
\ No newline at end of file
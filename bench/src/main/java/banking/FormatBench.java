@@ -0,0 +1,68 @@
+package banking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance formatting and parsing: the reusable {@link PesoFormatter}, the
+ * {@link Money#format} convenience that wraps it, and the
+ * {@code String.format} call both of them replaced, as a baseline. Every
+ * benchmark walks the same seeded set of amounts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djava.awt.headless=true"})
+public class FormatBench {
+    private static final int AMOUNTS = 1024;
+
+    private final long[] cents = new long[AMOUNTS];
+    private final String[] texts = new String[AMOUNTS];
+    private final PesoFormatter formatter = new PesoFormatter();
+    private final StringBuilder sb = new StringBuilder(32);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        for (int i = 0; i < AMOUNTS; i++) {
+            cents[i] = (long) (Math.pow(10, rnd.nextInt(12)) * rnd.nextDouble());
+            texts[i] = String.format("%.2f", cents[i] / 100.0);
+        }
+    }
+
+    private int nextIndex() {
+        return next = (next + 1) & (AMOUNTS - 1);
+    }
+
+    @Benchmark
+    public int pesoFormatter() {
+        return formatter.format(cents[nextIndex()]).length();
+    }
+
+    @Benchmark
+    public StringBuilder pesoFormatterAppend() {
+        sb.setLength(0);
+        return formatter.format(cents[nextIndex()]).appendTo(sb);
+    }
+
+    @Benchmark
+    public String moneyFormat() {
+        return Money.format(cents[nextIndex()]);
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format("₱%,.2f", cents[nextIndex()] / 100.0);
+    }
+
+    @Benchmark
+    public void parseCents(Blackhole bh) {
+        bh.consume(Money.parseCents(texts[nextIndex()]));
+    }
+}
@@ -0,0 +1,141 @@
+package banking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deposit, withdraw and transfer throughput through the {@link Ledger},
+ * without a journal so the numbers measure locking and validation rather than
+ * the disk. A {@code disjoint} invocation is one deposit followed by one
+ * withdrawal of the same amount, a {@code transfer} one moves money between
+ * two accounts, so no money is made or lost however long the run is. The
+ * {@code disjoint} runs give every thread its own accounts and the
+ * {@code contended} runs share four hot ones. Each comes with one, four and
+ * as many threads as there are cores, which shows how it scales; the JMH
+ * {@code -t} option overrides the count.
+ *
+ * <p>After each trial the total of all balances is checked against what the
+ * accounts were opened with, and the trial fails if a lost update made it drift.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djava.awt.headless=true"})
+public class LedgerBench {
+    private static final int ACCOUNTS_PER_THREAD = 1024;
+    private static final int MAX_THREADS = 64;
+    private static final int HOT_ACCOUNTS = 4;
+    private static final long INITIAL_BALANCE = 1_000_000_00L;
+    private static final long AMOUNT = 1_00L;
+
+    @State(Scope.Benchmark)
+    public static class Bank {
+        Ledger ledger;
+        BankAccount[] accounts;
+        final AtomicInteger nextThread = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ledger = new Ledger(new MapAccountStore(), null);
+            accounts = new BankAccount[MAX_THREADS * ACCOUNTS_PER_THREAD];
+            for (int i = 0; i < accounts.length; i++)
+                accounts[i] = ledger.open(String.format("B%06d", i), "Bench " + i, INITIAL_BALANCE);
+        }
+
+        @TearDown(Level.Trial)
+        public void checkTotal() {
+            long total = 0;
+            for (BankAccount acc : accounts) total += acc.getBalance();
+            long expected = accounts.length * INITIAL_BALANCE;
+            if (total != expected)
+                throw new IllegalStateException("Ledger out of balance: " + total + " != " + expected);
+        }
+    }
+
+    /** The slice of accounts one benchmark thread works on. */
+    @State(Scope.Thread)
+    public static class Slice {
+        int from;
+
+        @Setup(Level.Trial)
+        public void setup(Bank bank) {
+            from = (bank.nextThread.getAndIncrement() % MAX_THREADS) * ACCOUNTS_PER_THREAD;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void disjoint(Bank bank, Slice slice) {
+        depositWithdraw(bank, slice.from, ACCOUNTS_PER_THREAD);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void disjoint4(Bank bank, Slice slice) {
+        depositWithdraw(bank, slice.from, ACCOUNTS_PER_THREAD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void disjointMax(Bank bank, Slice slice) {
+        depositWithdraw(bank, slice.from, ACCOUNTS_PER_THREAD);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contended4(Bank bank) {
+        depositWithdraw(bank, 0, HOT_ACCOUNTS);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void contendedMax(Bank bank) {
+        depositWithdraw(bank, 0, HOT_ACCOUNTS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer(Bank bank, Slice slice) {
+        transfer(bank, slice.from, ACCOUNTS_PER_THREAD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void transferMax(Bank bank, Slice slice) {
+        transfer(bank, slice.from, ACCOUNTS_PER_THREAD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void transferContendedMax(Bank bank) {
+        transfer(bank, 0, HOT_ACCOUNTS);
+    }
+
+    /** The validation {@link BankAccount} does on its own, with no ledger or locks around it. */
+    @Benchmark
+    @Threads(1)
+    public void accountMath(Bank bank, Blackhole bh) {
+        BankAccount acc = bank.accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS_PER_THREAD)];
+        bh.consume(acc.balanceAfterDeposit(AMOUNT));
+        bh.consume(acc.balanceAfterWithdraw(AMOUNT));
+    }
+
+    private static void depositWithdraw(Bank bank, int from, int span) {
+        BankAccount acc = bank.accounts[from + ThreadLocalRandom.current().nextInt(span)];
+        bank.ledger.deposit(acc, AMOUNT);
+        bank.ledger.withdraw(acc, AMOUNT);
+    }
+
+    private static void transfer(Bank bank, int from, int span) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int i = rnd.nextInt(span);
+        int j = rnd.nextInt(span - 1);
+        if (j >= i) j++;
+        bank.ledger.transfer(bank.accounts[from + i], bank.accounts[from + j], AMOUNT);
+    }
+}
@@ -0,0 +1,104 @@
+package banking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account lookup and ordered access on the {@link AccountStore}: by number, by
+ * rank in either direction, by name through the trigram index, and a full
+ * walk in account-number order against sorting a copy of the numbers, which is
+ * what the table did before the store kept its own order. Each runs on both
+ * the object store and the {@link CompactAccountStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djava.awt.headless=true"})
+public class LookupBench {
+    private static final int PROBES = 1024;
+    /** The most matches the accounts table asks the name index for. */
+    private static final int MAX_MATCHES = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"objects", "compact"})
+    public String kind;
+
+    private AccountStore store;
+    private final String[] accNos = new String[PROBES];
+    private final int[] ranks = new int[PROBES];
+    private final String[] names = new String[PROBES];
+    private String[] unsorted;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = Stores.populated(accounts, kind.equals("compact") ? new CompactAccountStore() : new MapAccountStore());
+        store.buildNameIndex();
+        Random rnd = new Random(42);
+        for (int i = 0; i < PROBES; i++) {
+            BankAccount acc = store.accountAt(rnd.nextInt(accounts));
+            accNos[i] = acc.getAccNo();
+            ranks[i] = rnd.nextInt(accounts);
+            // A few characters from the middle of a real name, so every search has hits.
+            String name = acc.getName();
+            int from = rnd.nextInt(Math.max(1, name.length() - 4));
+            names[i] = name.substring(from, Math.min(name.length(), from + 4));
+        }
+        unsorted = new String[accounts];
+        int[] i = {0};
+        store.forEachAccNoInOrder(accNo -> unsorted[i[0]++] = accNo);
+        // Fisher-Yates with the same seed, so the sort baseline is repeatable.
+        for (int j = unsorted.length - 1; j > 0; j--) {
+            int k = rnd.nextInt(j + 1);
+            String t = unsorted[j];
+            unsorted[j] = unsorted[k];
+            unsorted[k] = t;
+        }
+    }
+
+    private int nextIndex() {
+        return next = (next + 1) & (PROBES - 1);
+    }
+
+    @Benchmark
+    public BankAccount get() {
+        return store.get(accNos[nextIndex()]);
+    }
+
+    @Benchmark
+    public int rankOf() {
+        return store.rankOf(accNos[nextIndex()]);
+    }
+
+    @Benchmark
+    public BankAccount accountAt() {
+        return store.accountAt(ranks[nextIndex()]);
+    }
+
+    @Benchmark
+    public int[] searchNames() {
+        return store.searchNames(names[nextIndex()], false, MAX_MATCHES);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void walkInOrder(Blackhole bh) {
+        store.forEachAccNoInOrder(bh::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String[] sortCopy() {
+        String[] copy = unsorted.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,42 @@
+package banking;
+
+import java.util.Random;
+
+/** Builds the in-memory stores the benchmarks run against. */
+final class Stores {
+    private static final String[] FIRST = {
+            "Juan", "Maria", "Jose", "Ana", "Pedro", "Rosa", "Carlos", "Elena", "Miguel", "Liza",
+            "Ramon", "Teresa", "Andres", "Carmen", "Paolo", "Bea", "Diego", "Nina", "Rafael", "Ines"};
+    private static final String[] LAST = {
+            "Dela Cruz", "Santos", "Reyes", "Garcia", "Mendoza", "Bautista", "Villanueva", "Ramos",
+            "Castillo", "Aquino", "Navarro", "Torres", "Flores", "Gonzales", "Rivera", "Lopez"};
+
+    private Stores() {}
+
+    /**
+     * A store of {@code count} accounts with numbers {@code A0000000} upwards,
+     * created in a seeded shuffled order so the sorted index sees the same
+     * inserts on every run.
+     */
+    static AccountStore populated(int count) {
+        return populated(count, new MapAccountStore());
+    }
+
+    /** The same accounts, created in the same order, in {@code store}. */
+    static AccountStore populated(int count, AccountStore store) {
+        Random rnd = new Random(42);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        for (int i = count - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        for (int n : order) {
+            String name = FIRST[rnd.nextInt(FIRST.length)] + " " + LAST[rnd.nextInt(LAST.length)] + " " + n;
+            store.create(String.format("A%07d", n), name, rnd.nextInt(100_000_000), false);
+        }
+        return store;
+    }
+}
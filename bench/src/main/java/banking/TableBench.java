@@ -0,0 +1,59 @@
+package banking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code refreshAccountsUI} costs at different store sizes. The app's
+ * table and combo models hold no rows of their own; a refresh is the store
+ * reads they make: the size, the full prefix range, and the cells of the
+ * rows a table of the default height paints. A full scan of every cell is
+ * measured for comparison. {@link #refresh} should stay flat as
+ * {@code accounts} grows while {@link #scanAllRows} grows with it. The reads
+ * go to the store directly, so this module needs only the core and not the
+ * Swing app.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TableBench {
+    private static final int VISIBLE_ROWS = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private AccountStore store;
+    private int firstVisible;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = Stores.populated(accounts);
+        firstVisible = accounts / 2;
+    }
+
+    @Benchmark
+    public void refresh(Blackhole bh) {
+        int rows = store.size();
+        int[] range = store.prefixRange("");
+        int end = Math.min(rows, firstVisible + VISIBLE_ROWS);
+        for (int row = firstVisible; row < end; row++) cells(store.accountAt(row), bh);
+        bh.consume(range[1] - range[0]);
+    }
+
+    @Benchmark
+    public void scanAllRows(Blackhole bh) {
+        int rows = store.size();
+        for (int row = 0; row < rows; row++) cells(store.accountAt(row), bh);
+    }
+
+    private static void cells(BankAccount acc, Blackhole bh) {
+        bh.consume(acc.getAccNo());
+        bh.consume(acc.getName());
+        bh.consume(acc.getBalance());
+    }
+}
@@ -0,0 +1,130 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Account storage. Every change goes through here so views can react to the one
+ * account that changed instead of reloading everything. {@link MapAccountStore}
+ * keeps a {@link BankAccount} per account; {@link CompactAccountStore} keeps
+ * them in primitive arrays for banks with tens of millions of accounts.
+ *
+ * <p>Positions are in account-number order. Ids are handed out in creation
+ * order and never reused; the name search answers with them.
+ *
+ * <p>Stores are safe to use from any thread. Listeners are called on the thread
+ * that made the change; Swing code wraps its listeners with
+ * {@code FrameCoalescer.onEdt}.
+ */
+abstract class AccountStore {
+    interface Listener {
+        void accountCreated(BankAccount acc);
+        void balanceChanged(BankAccount acc);
+
+        /** Many accounts were created or changed at once; views should reload. */
+        void accountsChanged();
+    }
+
+    interface RowVisitor {
+        void row(String accNo, String name, long balance) throws IOException;
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    void addListener(Listener l) { listeners.add(l); }
+
+    /**
+     * Starts this empty store from a checkpoint. Must be called before the store
+     * is shared with other threads.
+     */
+    abstract void attach(Snapshot snapshot);
+
+    abstract BankAccount get(String accNo);
+
+    abstract boolean contains(String accNo);
+
+    boolean isEmpty() { return size() == 0; }
+
+    abstract int size();
+
+    /** Account at the given position in account-number order. */
+    abstract BankAccount accountAt(int pos);
+
+    /** Like {@link #accountAt} but only the account number, which may spare the store making the account. */
+    abstract String accNoAt(int pos);
+
+    /**
+     * Positions {@code [from, to)} of the account numbers starting with
+     * {@code prefix}, as two rank lookups. Account numbers are typed text, so
+     * nothing sorts after {@code prefix + '\uffff'} that still starts with it.
+     */
+    abstract int[] prefixRange(String prefix);
+
+    /** Position of the account number in sorted order, or {@code -(insertion point) - 1}. */
+    abstract int rankOf(String accNo);
+
+    abstract void forEachInOrder(Consumer<BankAccount> action);
+
+    /** Like {@link #forEachInOrder} but only the account numbers. */
+    abstract void forEachAccNoInOrder(Consumer<String> action);
+
+    /**
+     * Throws whatever {@link #create} would for this account, without creating
+     * it, so a caller can check before it commits to the account elsewhere.
+     */
+    abstract void checkCreate(String accNo, String name);
+
+    BankAccount create(String accNo, String name, long initialBalance) {
+        return create(accNo, name, initialBalance, true);
+    }
+
+    /** Creates an account, announcing it to listeners only if {@code notify} is set. */
+    abstract BankAccount create(String accNo, String name, long initialBalance, boolean notify);
+
+    /** Ids of up to {@code limit} accounts whose name contains, or starts with, {@code query}. */
+    abstract int[] searchNames(String query, boolean prefix, int limit);
+
+    /** Indexes the names now; otherwise the first search does it. */
+    abstract void buildNameIndex();
+
+    abstract boolean isNameIndexBuilt();
+
+    /**
+     * One more than the highest id, so {@code [0, idCount())} stays the same set
+     * of accounts however many are created afterwards.
+     */
+    abstract int idCount();
+
+    abstract BankAccount accountById(int id);
+
+    /** Id of the account, or -1 if there is none. */
+    abstract int idOf(String accNo);
+
+    void fireAccountCreated(BankAccount acc) {
+        for (Listener l : listeners) l.accountCreated(acc);
+    }
+
+    void fireBalanceChanged(BankAccount acc) {
+        for (Listener l : listeners) l.balanceChanged(acc);
+    }
+
+    void fireAccountsChanged() {
+        for (Listener l : listeners) l.accountsChanged();
+    }
+
+    /**
+     * Writes every account in {@code view} to a new checkpoint file, with the
+     * balances as of the view, while writers keep going.
+     */
+    abstract void writeSnapshot(Path file, int journalId, long journalPosition, Versions.View view) throws IOException;
+
+    /**
+     * Visits every account that existed when it started, in account-number
+     * order, without holding a lock for the whole walk, so a long walk does not
+     * block new accounts.
+     */
+    abstract void forEachRow(RowVisitor visitor) throws IOException;
+}
@@ -0,0 +1,113 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The "All Accounts" report. The dialog shows one page of it at a time, built
+ * from the store's positions when the page is opened; {@link #export} streams
+ * the whole report to a file through one direct buffer, so neither grows with
+ * the number of accounts.
+ *
+ * <p>Both read through a {@link Versions.View}, so the balances in a report are
+ * all from the same moment and its total is one the bank really had, however
+ * much money moves while it is written.
+ */
+final class AccountsReport {
+    static final int PAGE_LINES = 500;
+    private static final String HEADER = "ALL ACCOUNTS\n-----------\n";
+
+    interface Progress {
+        void rowsWritten(long rows);
+    }
+
+    static int pageCount(int accounts) { return Math.max(1, (accounts + PAGE_LINES - 1) / PAGE_LINES); }
+
+    /**
+     * Text of page {@code page} (from 0) of the {@code view.size()} accounts in
+     * {@code view}, or of its last page. Accounts opened after the view are
+     * skipped, so every page holds the same accounts for as long as the view is
+     * open.
+     */
+    static String page(AccountStore store, Versions.View view, int page) {
+        int row = Math.min(page, pageCount(view.size()) - 1) * PAGE_LINES;
+        int size = store.size();
+        PesoFormatter peso = new PesoFormatter();
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (int pos = view.positionOf(row), lines = 0; pos < size && lines < PAGE_LINES; pos++) {
+            BankAccount a = store.accountAt(pos);
+            if (!view.includes(a.getAccNo())) continue;
+            line(sb, peso, a.getAccNo(), a.getName(), view.balanceOf(a));
+            lines++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the full report as of {@code view} to {@code file}, ending with the
+     * number of accounts and their total, and returns the number of accounts.
+     */
+    static long export(Versions.View view, Path file, Progress progress) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 18);
+            CharBuffer chars = CharBuffer.allocate(1 << 14);
+            CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            PesoFormatter peso = new PesoFormatter();
+            StringBuilder sb = new StringBuilder(HEADER);
+            long[] rows = {0};
+            long[] total = {0};
+            view.forEachRow((accNo, name, balance) -> {
+                line(sb, peso, accNo, name, balance);
+                total[0] += balance;
+                if (sb.length() > chars.capacity() / 2) encode(ch, sb, chars, utf8, out);
+                if (++rows[0] % 100_000 == 0) progress.rowsWritten(rows[0]);
+            });
+            sb.append("-----------\n").append(rows[0]).append(" accounts | ");
+            peso.format(total[0]).appendTo(sb).append('\n');
+            encode(ch, sb, chars, utf8, out);
+            drain(ch, out);
+            chars.flip();
+            utf8.encode(chars, out, true);
+            utf8.flush(out);
+            drain(ch, out);
+            progress.rowsWritten(rows[0]);
+            return rows[0];
+        }
+    }
+
+    private static void line(StringBuilder sb, PesoFormatter peso, String accNo, String name, long balance) {
+        sb.append(accNo).append(" | ").append(name).append(" | ");
+        peso.format(balance).appendTo(sb).append('\n');
+    }
+
+    /** Moves the text in {@code sb} into {@code out} as UTF-8, writing whenever it fills. */
+    private static void encode(FileChannel ch, StringBuilder sb, CharBuffer chars, CharsetEncoder utf8,
+                               ByteBuffer out) throws IOException {
+        for (int from = 0; from < sb.length(); ) {
+            int n = Math.min(chars.remaining(), sb.length() - from);
+            chars.append(sb, from, from + n);
+            from += n;
+            chars.flip();
+            while (utf8.encode(chars, out, false).isOverflow()) drain(ch, out);
+            // A surrogate pair split across two rounds stays behind for the next one.
+            chars.compact();
+        }
+        sb.setLength(0);
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) ch.write(out);
+        out.clear();
+    }
+}
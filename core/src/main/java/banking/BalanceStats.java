@@ -0,0 +1,300 @@
+package banking;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals over every balance, kept up to date by {@link Ledger} as each change
+ * is applied instead of by scanning the accounts: the number of accounts, the
+ * sum of their balances, how many fall into each of the {@link #BAND_FLOORS}
+ * bands, and the largest and smallest accounts. Counters are {@link LongAdder}s,
+ * so concurrent transactions on different accounts do not fight over a cache
+ * line.
+ *
+ * <p>Only the accounts that can make the top lists are ranked, see
+ * {@link Leaders}. After accounts are loaded without going through the ledger,
+ * and whenever a top list runs out of candidates, the stats are rebuilt from a
+ * {@link Versions.View} by one pass that takes no lock: changes made during the
+ * pass are queued and applied to its result before that is swapped in. Until
+ * the first count is done the stats are not {@link #isReady ready}.
+ */
+final class BalanceStats {
+    /** Lower bounds of the balance bands, in centavos: ₱0, ₱1,000, ₱10,000, ₱100,000 and ₱1,000,000. */
+    static final long[] BAND_FLOORS = {0, 1_000_00L, 10_000_00L, 100_000_00L, 1_000_000_00L};
+
+    /** One ranked account, as it was when it was ranked. */
+    static final class Leader {
+        final String accNo;
+        final long balance;
+
+        Leader(String accNo, long balance) {
+            this.accNo = accNo;
+            this.balance = balance;
+        }
+    }
+
+    /** The counts as of the last recount; the adders hold what changed since. Null while recounting. */
+    private volatile long[] base = new long[2 + BAND_FLOORS.length];
+    private final LongAdder accounts = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder[] bands = new LongAdder[BAND_FLOORS.length];
+    private volatile Leaders largest = new Leaders(1);
+    private volatile Leaders smallest = new Leaders(-1);
+    /** Changes made since the view a rebuild is reading was taken, or null when none is running. */
+    private volatile Queue<Change> pending;
+    /** State of the running rebuild; only its own thread touches it. */
+    private Rebuild rebuild;
+
+    /** One change queued for a rebuild. */
+    private static final class Change {
+        final String accNo;
+        final long before;
+        final long after;
+        final boolean opened;
+
+        Change(String accNo, long before, long after, boolean opened) {
+            this.accNo = accNo;
+            this.before = before;
+            this.after = after;
+            this.opened = opened;
+        }
+    }
+
+    BalanceStats() {
+        for (int i = 0; i < bands.length; i++) bands[i] = new LongAdder();
+    }
+
+    /** Called under the account's lock when it is opened. */
+    void opened(String accNo, long balance) {
+        accounts.increment();
+        total.add(balance);
+        bands[band(balance)].increment();
+        largest.changed(accNo, balance, balance, true);
+        smallest.changed(accNo, balance, balance, true);
+        Queue<Change> queue = pending;
+        if (queue != null) queue.add(new Change(accNo, balance, balance, true));
+    }
+
+    /** Called under the account's lock when its balance changes. */
+    void changed(String accNo, long before, long after) {
+        total.add(after - before);
+        int from = band(before);
+        int to = band(after);
+        if (from != to) {
+            bands[from].decrement();
+            bands[to].increment();
+        }
+        largest.changed(accNo, before, after, false);
+        smallest.changed(accNo, before, after, false);
+        Queue<Change> queue = pending;
+        if (queue != null) queue.add(new Change(accNo, before, after, false));
+    }
+
+    /** False while the accounts are being counted after a load; the counts and top lists are not known yet. */
+    boolean isReady() { return base != null; }
+
+    long accounts() { return counted()[0] + accounts.sum(); }
+
+    long total() { return counted()[1] + total.sum(); }
+
+    /** Number of accounts in each band of {@link #BAND_FLOORS}. */
+    long[] bands() {
+        long[] b = counted();
+        long[] counts = new long[bands.length];
+        for (int i = 0; i < counts.length; i++) counts[i] = b[2 + i] + bands[i].sum();
+        return counts;
+    }
+
+    private long[] counted() {
+        long[] b = base;
+        if (b == null) throw new IllegalStateException("The balance stats are still being calculated.");
+        return b;
+    }
+
+    /** The {@code n} largest accounts, largest first, or null if they are not known until a rebuild. */
+    List<Leader> largest(int n) { return base == null ? null : largest.top(n); }
+
+    /** The {@code n} smallest accounts, smallest first, or null if they are not known until a rebuild. */
+    List<Leader> smallest(int n) { return base == null ? null : smallest.top(n); }
+
+    /**
+     * Starts a rebuild. Called with every account locked, as the view the
+     * rebuild will read is taken, so every later change is queued for it. With
+     * {@code recount} the counts start over too and are not ready until
+     * {@link #finishRebuild}.
+     */
+    void beginRebuild(boolean recount) {
+        if (recount) {
+            base = null;
+            accounts.reset();
+            total.reset();
+            for (LongAdder band : bands) band.reset();
+        }
+        rebuild = new Rebuild(recount);
+        pending = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Counts and ranks the accounts in {@code view}, then applies the changes
+     * queued meanwhile to the new top lists. Takes no lock; writers keep going.
+     */
+    void scan(Versions.View view) throws IOException {
+        Rebuild r = rebuild;
+        view.forEachRow((accNo, name, balance) -> {
+            if (r.counts != null) {
+                r.counts[0]++;
+                r.counts[1] += balance;
+                r.counts[2 + band(balance)]++;
+            }
+            r.largest.offer(accNo, balance);
+            r.smallest.offer(accNo, balance);
+        });
+        r.newLargest = r.largest.toLeaders();
+        r.newSmallest = r.smallest.toLeaders();
+        catchUp(r);
+    }
+
+    /** Applies the last queued changes and swaps the results in. Called with every account locked. */
+    void finishRebuild() {
+        Rebuild r = rebuild;
+        catchUp(r);
+        largest = r.newLargest;
+        smallest = r.newSmallest;
+        if (r.counts != null) base = r.counts;
+        pending = null;
+        rebuild = null;
+    }
+
+    /** Drops a rebuild that failed. The counts stay unknown if it was a recount. */
+    void abandonRebuild() {
+        pending = null;
+        rebuild = null;
+    }
+
+    private void catchUp(Rebuild r) {
+        for (Change c; (c = pending.poll()) != null; ) {
+            r.newLargest.changed(c.accNo, c.before, c.after, c.opened);
+            r.newSmallest.changed(c.accNo, c.before, c.after, c.opened);
+        }
+    }
+
+    /** What one rebuild collects from its view. */
+    private static final class Rebuild {
+        /** Accounts, total and the bands, or null if only the top lists are rebuilt. */
+        final long[] counts;
+        final Ranking largest = new Ranking(1);
+        final Ranking smallest = new Ranking(-1);
+        Leaders newLargest;
+        Leaders newSmallest;
+
+        Rebuild(boolean recount) {
+            counts = recount ? new long[2 + BAND_FLOORS.length] : null;
+        }
+    }
+
+    /** The best {@link Leaders#CANDIDATES} accounts seen so far in one pass, weakest on top. */
+    private static final class Ranking {
+        private final int sign;
+        private final PriorityQueue<Leader> heap;
+        private long offered;
+
+        Ranking(int sign) {
+            this.sign = sign;
+            Comparator<Leader> byKey = Comparator.comparingLong(l -> sign * l.balance);
+            heap = new PriorityQueue<>(Leaders.CANDIDATES + 1, byKey.thenComparing(l -> l.accNo, Comparator.reverseOrder()));
+        }
+
+        void offer(String accNo, long balance) {
+            offered++;
+            heap.add(new Leader(accNo, balance));
+            if (heap.size() > Leaders.CANDIDATES) heap.poll();
+        }
+
+        Leaders toLeaders() {
+            // If accounts were left out, none of them beats the weakest one kept, so its key is the floor.
+            long floor = offered <= Leaders.CANDIDATES ? Long.MIN_VALUE : sign * heap.peek().balance;
+            return new Leaders(sign, heap, floor);
+        }
+    }
+
+    private static int band(long balance) {
+        int b = BAND_FLOORS.length - 1;
+        while (b > 0 && balance < BAND_FLOORS[b]) b--;
+        return b;
+    }
+
+    /**
+     * The accounts that can be in a top list. Every account whose key (the
+     * balance, negated for the smallest list) is above {@link #floor} is in the
+     * set, and the entries it holds at the floor are kept current, so its first
+     * entries at or above the floor are true leaders; ties at the floor may
+     * have more accounts than the set holds. Accounts below the floor cost one
+     * comparison per change. When the set grows past {@link #MAX_CANDIDATES}
+     * its lowest entries are dropped and the floor rises to match. The set may
+     * hold stale entries below the floor; they are never reported and are the
+     * first to be dropped.
+     */
+    private static final class Leaders {
+        private static final int CANDIDATES = 256;
+        private static final int MAX_CANDIDATES = 2 * CANDIDATES;
+
+        private final int sign;
+        private final ConcurrentSkipListSet<Leader> set;
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong floor;
+
+        Leaders(int sign) {
+            this(sign, List.of(), Long.MIN_VALUE);
+        }
+
+        Leaders(int sign, Iterable<Leader> leaders, long floor) {
+            this.sign = sign;
+            Comparator<Leader> byKey = Comparator.comparingLong(l -> -sign * l.balance);
+            set = new ConcurrentSkipListSet<>(byKey.thenComparing(l -> l.accNo));
+            for (Leader l : leaders) set.add(l);
+            size.set(set.size());
+            this.floor = new AtomicLong(floor);
+        }
+
+        void changed(String accNo, long before, long after, boolean opened) {
+            long f = floor.get();
+            if (!opened && sign * before >= f && set.remove(new Leader(accNo, before))) size.decrementAndGet();
+            if (sign * after > f && set.add(new Leader(accNo, after)) && size.incrementAndGet() > MAX_CANDIDATES)
+                prune();
+        }
+
+        private void prune() {
+            while (size.get() > CANDIDATES) {
+                Leader lowest = set.pollLast();
+                if (lowest == null) break;
+                size.decrementAndGet();
+                long key = sign * lowest.balance;
+                floor.accumulateAndGet(key, Math::max);
+            }
+        }
+
+        /**
+         * The first {@code n} (at most {@link #CANDIDATES}) entries at or above
+         * the floor, or null if there are fewer and some accounts were left out.
+         */
+        List<Leader> top(int n) {
+            n = Math.min(n, CANDIDATES);
+            long f = floor.get();
+            List<Leader> top = new ArrayList<>(n);
+            for (Leader l : set) {
+                if (top.size() == n) break;
+                if (sign * l.balance >= f) top.add(l);
+            }
+            return top.size() < n && f != Long.MIN_VALUE ? null : top;
+        }
+    }
+}
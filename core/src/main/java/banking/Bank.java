@@ -0,0 +1,186 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything that holds the accounts, without any UI: the store, the ledger,
+ * the journal and checkpoints under a data directory, the transaction history
+ * and the metrics. The Swing window and the HTTP API both work on one of
+ * these, and can share it, so changes made through either show in the other.
+ */
+final class Bank implements Closeable {
+    /** Told about storage problems at startup that the bank works around. */
+    interface Problems {
+        /** The checkpoint could not be read; the whole journal is replayed instead. */
+        void checkpointUnreadable(IOException cause);
+
+        /** The journal could not be opened; the bank runs in memory and saves nothing. */
+        void journalUnavailable(Exception cause);
+    }
+
+    /** {@code -Dbank.store=compact} keeps accounts in primitive arrays, for very large banks. */
+    private static final boolean COMPACT_STORE = "compact".equals(System.getProperty("bank.store"));
+    /**
+     * {@code -Dbank.history=false} keeps no transaction history. It is off by
+     * default with the compact store: the history costs a map entry and a log
+     * object per account, several times what the compact store itself needs.
+     */
+    private static final boolean KEEP_HISTORY =
+            Boolean.parseBoolean(System.getProperty("bank.history", String.valueOf(!COMPACT_STORE)));
+
+    private final AccountStore store = COMPACT_STORE ? new CompactAccountStore() : new MapAccountStore();
+    private final TransactionHistory history = KEEP_HISTORY ? new TransactionHistory() : null;
+    private final Metrics metrics = new Metrics();
+    private final Journal journal;
+    private final Ledger ledger;
+    private final Checkpointer checkpointer;
+    private final List<Closeable> services = new ArrayList<>();
+    private boolean closed;
+
+    private Bank(Path dataDir, long checkpointMinutes, Problems problems) {
+        Path snapshotFile = dataDir.resolve("ledger.snapshot");
+        Path historyFile = dataDir.resolve("ledger.history");
+        Snapshot checkpoint = loadCheckpoint(snapshotFile, problems);
+        journal = openJournal(dataDir.resolve("ledger.journal"), checkpoint, problems);
+        ledger = new Ledger(store, journal, history);
+        ledger.rebuildStats();
+        loadEarlierHistory(historyFile, checkpoint);
+        checkpointer = journal == null ? null
+                : new Checkpointer(store, ledger, journal, snapshotFile, historyFile, checkpoint);
+        if (checkpointer != null) checkpointer.start(checkpointMinutes);
+    }
+
+    /**
+     * Opens the bank kept in {@code dataDir}: maps the last checkpoint, replays
+     * the journal written since and starts writing a checkpoint every
+     * {@code checkpointMinutes}.
+     */
+    static Bank open(Path dataDir, long checkpointMinutes, Problems problems) {
+        return new Bank(dataDir, checkpointMinutes, problems);
+    }
+
+    AccountStore store() { return store; }
+
+    Ledger ledger() { return ledger; }
+
+    /** The transaction history, or null if none is kept. */
+    TransactionHistory history() { return history; }
+
+    Metrics metrics() { return metrics; }
+
+    /** False while the history from before the checkpoint is still being loaded. */
+    boolean isHistoryComplete() { return history == null || history.isComplete(); }
+
+    /**
+     * Has {@link #close} close {@code service} before the storage, so anything
+     * still feeding the ledger stops first. Services close in reverse order of
+     * registration.
+     */
+    synchronized void closeWith(Closeable service) { services.add(service); }
+
+    /**
+     * Maps the last checkpoint, if any, as the starting content of the store.
+     * Only its header is read here, so startup stays fast. If it cannot be read,
+     * the whole journal is replayed instead.
+     */
+    private Snapshot loadCheckpoint(Path file, Problems problems) {
+        try {
+            Path latest = Snapshot.latest(file);
+            if (latest == null) return null;
+            Snapshot checkpoint = Snapshot.open(latest);
+            store.attach(checkpoint);
+            return checkpoint;
+        } catch (IOException ex) {
+            problems.checkpointUnreadable(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the transaction journal and replays what was written after the
+     * checkpoint. If it cannot be opened the bank still runs, but only in memory.
+     */
+    private Journal openJournal(Path file, Snapshot checkpoint, Problems problems) {
+        try {
+            return Journal.open(file, checkpoint, e -> Ledger.replay(store, history, e));
+        } catch (IOException | RuntimeException ex) {
+            problems.journalUnavailable(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Maps the history saved with the checkpoint, if it belongs to it. Whatever
+     * the journal holds between that and the checkpoint, usually nothing, is read
+     * back in the background and put in front of what was replayed and recorded
+     * since. Without a usable history file that is every record the journal
+     * still has from before the checkpoint.
+     */
+    private void loadEarlierHistory(Path file, Snapshot checkpoint) {
+        if (journal == null || history == null) return;
+        long from = 0;
+        if (checkpoint != null && checkpoint.journalId() == journal.id()) {
+            try {
+                Path latest = Snapshot.latest(file);
+                HistorySnapshot saved = latest == null ? null : HistorySnapshot.open(latest);
+                if (saved != null && saved.journalId() == journal.id()
+                        && saved.journalPosition() <= checkpoint.journalPosition()) {
+                    history.attach(saved);
+                    from = saved.journalPosition();
+                }
+            } catch (IOException ex) {
+                System.err.println("Could not read the saved transaction history, using what the journal still holds: " + ex);
+            }
+        }
+        if (!journal.hasCheckpointed(from)) return;
+        history.loading();
+        long start = from;
+        Thread loader = new Thread(() -> {
+            TransactionHistory earlier = new TransactionHistory();
+            try {
+                journal.readCheckpointed(start, e -> Ledger.record(earlier, e));
+                history.prependAll(earlier);
+            } catch (IOException | RuntimeException ex) {
+                if (!isClosed()) System.err.println("Could not load the transaction history: " + ex);
+            }
+        }, "history-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private synchronized boolean isClosed() { return closed; }
+
+    /**
+     * Closes the registered services, writes a final checkpoint and closes the
+     * journal. Only the first call does anything.
+     */
+    @Override
+    public void close() {
+        List<Closeable> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(services);
+            services.clear();
+        }
+        for (int i = toClose.size() - 1; i >= 0; i--) {
+            try {
+                toClose.get(i).close();
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("Could not stop " + toClose.get(i) + ": " + ex);
+            }
+        }
+        try {
+            if (checkpointer != null) checkpointer.close();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Final checkpoint failed: " + ex);
+        }
+        try {
+            if (journal != null) journal.close();
+        } catch (IOException ignored) {}
+    }
+}
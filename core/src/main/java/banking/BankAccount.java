@@ -0,0 +1,48 @@
+package banking;
+
+/**
+ * A single account. The balance is volatile so any thread can read it without
+ * locking, but it is only changed through {@link Ledger}, which validates the
+ * change, journals it and sets the new balance under the account's lock.
+ *
+ * <p>{@link CompactAccountStore} hands out short-lived subclasses that read and
+ * write its arrays instead of these fields, so code compares accounts by
+ * number, never by identity.
+ */
+class BankAccount {
+    private final String accNo;
+    private final String name;
+    private volatile long balance;
+
+    BankAccount(String accNo, String name, long initialBalance) {
+        this.accNo = accNo;
+        this.name = name;
+        this.balance = initialBalance;
+    }
+
+    String getAccNo() { return accNo; }
+    String getName() { return name; }
+
+    /** Balance in centavos. */
+    long getBalance() { return balance; }
+
+    /** Validates a deposit and returns the resulting balance without applying it. */
+    long balanceAfterDeposit(long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Deposit must be greater than 0.");
+        try {
+            return Math.addExact(getBalance(), amount);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Deposit would exceed the maximum balance.");
+        }
+    }
+
+    /** Validates a withdrawal and returns the resulting balance without applying it. */
+    long balanceAfterWithdraw(long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Withdraw must be greater than 0.");
+        long balance = getBalance();
+        if (amount > balance) throw new IllegalArgumentException("Insufficient balance.");
+        return Math.subtractExact(balance, amount);
+    }
+
+    void setBalance(long balance) { this.balance = balance; }
+}
@@ -0,0 +1,88 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a fresh {@link Snapshot} every few minutes and when the app closes, so
+ * startup only has to replay the part of the journal written since. The
+ * transaction history up to the same point, if one is kept, goes to a
+ * {@link HistorySnapshot}, and once both are written the journal is rolled to
+ * start there.
+ */
+final class Checkpointer implements Closeable {
+    private final AccountStore store;
+    private final Ledger ledger;
+    private final Journal journal;
+    private final Path file;
+    private final Path historyFile;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private long lastPosition;
+
+    /** {@code loaded} is the checkpoint the store started from, or null. */
+    Checkpointer(AccountStore store, Ledger ledger, Journal journal, Path file, Path historyFile, Snapshot loaded) {
+        this.store = store;
+        this.ledger = ledger;
+        this.journal = journal;
+        this.file = file;
+        this.historyFile = historyFile;
+        this.lastPosition = loaded != null && loaded.journalId() == journal.id() ? journal.replayStart() : -1;
+    }
+
+    void start(long periodMinutes) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("Checkpoint failed: " + ex);
+            }
+        }, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Writes a checkpoint unless nothing was journaled since the last one and
+     * the journal already starts there. The balances come from one view, and
+     * the journal is forced up to the view's position before the new file is
+     * written, so a checkpoint never holds a change that a crash could still
+     * take out of the journal.
+     *
+     * <p>The history is written after the balances, so the history file never
+     * gets ahead of the checkpoint, and it waits while earlier history is still
+     * being read back from the journal. The journal is only rolled when both
+     * files were written at the same position.
+     */
+    synchronized boolean checkpoint() throws IOException {
+        try (Ledger.Checkpoint cp = ledger.checkpoint()) {
+            if (cp.position == lastPosition && journal.startsAt(cp.position)) return false;
+            if (cp.position != lastPosition) {
+                journal.awaitDurable(cp.position);
+                store.writeSnapshot(file, journal.id(), cp.position, cp.view);
+                lastPosition = cp.position;
+            }
+            TransactionHistory history = ledger.history();
+            if (history != null) {
+                if (!history.isComplete()) return true;
+                history.writeSnapshot(historyFile, journal.id(), cp.position, cp.historyCut);
+            } else {
+                // The roll drops records an older history file would need to be continued from.
+                Snapshot.deleteOthers(historyFile, null);
+            }
+            lastPosition = journal.roll(cp.position);
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        checkpoint();
+    }
+}
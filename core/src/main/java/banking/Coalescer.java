@@ -0,0 +1,32 @@
+package banking;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands work finished on other threads to the code that shows it, in batches.
+ * Producers keep their own pending state, register a drain for it and call
+ * {@link #requestFlush()}; the coalescer decides when and on which thread the
+ * drains run. The Swing app runs them once per frame on the Event Dispatch
+ * Thread; {@link #direct()} runs them immediately, for use without a UI.
+ */
+interface Coalescer {
+    void register(Runnable drain);
+
+    void requestFlush();
+
+    /** Runs every drain on the thread that asked for the flush, one flush at a time. */
+    static Coalescer direct() {
+        return new Coalescer() {
+            private final List<Runnable> drains = new CopyOnWriteArrayList<>();
+
+            @Override
+            public void register(Runnable drain) { drains.add(drain); }
+
+            @Override
+            public synchronized void requestFlush() {
+                for (Runnable drain : drains) drain.run();
+            }
+        };
+    }
+}
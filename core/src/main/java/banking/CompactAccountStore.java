@@ -0,0 +1,593 @@
+package banking;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * An {@link AccountStore} for tens of millions of accounts that keeps them in a
+ * few large primitive arrays instead of objects. An account is an id, handed
+ * out in creation order. Its balance is a slot in a paged {@code long[]}. Its
+ * number and name sit one after the other in a shared byte arena, and an
+ * open-addressing table of {@code long}s maps numbers to ids. Account-number
+ * order is a sorted {@code int[]} of ids plus a short sorted run of newer ones,
+ * merged in once it grows past about twice the square root of the total. With
+ * ten-character numbers and names of about 20 characters that is about 70
+ * bytes per account, and no objects for the collector to trace.
+ *
+ * <p>The {@link BankAccount}s it returns are short-lived views of one id; two
+ * views of the same account are equal but not the same object. Lookups by
+ * number use an optimistic {@link StampedLock} read and take the read lock only
+ * if a create raced them. A checkpoint is copied into the arrays when attached
+ * instead of staying mapped, and the name index is only built when something
+ * asks for it.
+ *
+ * <p>{@link Bank} uses it when started with {@code -Dbank.store=compact}.
+ */
+final class CompactAccountStore extends AccountStore {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE = 1 << PAGE_BITS;
+    private static final int ARENA_BITS = 20;
+    private static final int ARENA_PAGE = 1 << ARENA_BITS;
+    /** Longest account number or name in UTF-8 bytes; lengths take two bytes in the arena. */
+    private static final int MAX_TEXT = 0xffff;
+    /** Ids are {@code int}s and the hash table stores {@code id + 1}. */
+    private static final int MAX_ID = Integer.MAX_VALUE - 1;
+    private static final VarHandle BALANCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final StampedLock lock = new StampedLock();
+    /** Ids below this are complete; written last when an account is added. */
+    private volatile int count;
+
+    /** Per id, in pages of {@link #PAGE}: the balance, and where its text starts in the arena. */
+    private long[][] balances = new long[16][];
+    private long[][] texts = new long[16][];
+
+    /** {@code [u16 length][account number][u16 length][name]} per id, never split across pages. */
+    private byte[][] arena = new byte[16][];
+    private int arenaPages;
+    private int arenaUsed = ARENA_PAGE;
+
+    /** Linear probing; a slot holds {@code hash << 32 | (id + 1)} and 0 when free. */
+    private long[] slots = new long[16];
+
+    /** Ids in account-number order, and a sorted run of ids added since the last merge. */
+    private int[] sorted = new int[16];
+    private int sortedSize;
+    private int[] recent = new int[16];
+    private int recentSize;
+
+    private volatile NameIndex names;
+
+    /** Copies every entry of the checkpoint into this empty store. */
+    @Override
+    void attach(Snapshot snapshot) {
+        long stamp = lock.writeLock();
+        try {
+            if (count > 0) throw new IllegalStateException("Store is not empty.");
+            int n = snapshot.count();
+            for (int i = 0; i < n; i++) {
+                String accNo = snapshot.accNo(i);
+                append(accNo, snapshot.name(i), snapshot.balance(i), hash(accNo));
+            }
+            // Checkpoint entries are in account-number order already.
+            sorted = new int[Math.max(16, n)];
+            for (int i = 0; i < n; i++) sorted[i] = i;
+            sortedSize = n;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    BankAccount get(String accNo) {
+        int id = find(accNo);
+        return id < 0 ? null : new Account(id, accNo);
+    }
+
+    @Override
+    boolean contains(String accNo) { return find(accNo) >= 0; }
+
+    /**
+     * The accounts that have a position. Counted from the order rather than
+     * {@link #count}, which a create publishes before the account is placed.
+     */
+    @Override
+    int size() {
+        long stamp = lock.tryOptimisticRead();
+        int n = sortedSize + recentSize;
+        if (lock.validate(stamp)) return n;
+        stamp = lock.readLock();
+        try {
+            return sortedSize + recentSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    BankAccount accountAt(int pos) {
+        long stamp = lock.readLock();
+        try {
+            return new Account(idAt(pos), null);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    String accNoAt(int pos) {
+        long stamp = lock.readLock();
+        try {
+            return accNoOf(idAt(pos));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    int[] prefixRange(String prefix) {
+        long stamp = lock.readLock();
+        try {
+            if (prefix.isEmpty()) return new int[]{0, sortedSize + recentSize};
+            return new int[]{insertionPoint(rank(prefix)), insertionPoint(rank(prefix + '\uffff'))};
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    int rankOf(String accNo) {
+        long stamp = lock.readLock();
+        try {
+            return rank(accNo);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Walks the accounts that existed when it started, without holding the lock. */
+    @Override
+    void forEachInOrder(Consumer<BankAccount> action) {
+        for (int id : order()) action.accept(new Account(id, null));
+    }
+
+    @Override
+    void forEachAccNoInOrder(Consumer<String> action) {
+        for (int id : order()) action.accept(accNoOf(id));
+    }
+
+    @Override
+    void checkCreate(String accNo, String name) {
+        if (utf8Length(accNo) > MAX_TEXT || utf8Length(name) > MAX_TEXT)
+            throw new IllegalArgumentException("Account number or name is too long.");
+        if (count >= MAX_ID) throw new IllegalStateException("Store is full.");
+        if (find(accNo) >= 0) throw new IllegalArgumentException("Account number already exists.");
+    }
+
+    @Override
+    BankAccount create(String accNo, String name, long initialBalance, boolean notify) {
+        int hash = hash(accNo);
+        BankAccount acc;
+        long stamp = lock.writeLock();
+        try {
+            if (probe(accNo, hash) >= 0) throw new IllegalArgumentException("Account number already exists.");
+            int id = append(accNo, name, initialBalance, hash);
+            addRecent(id);
+            NameIndex index = names;
+            if (index != null) index.add(name);
+            acc = new Account(id, accNo);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (notify) fireAccountCreated(acc);
+        return acc;
+    }
+
+    @Override
+    int[] searchNames(String query, boolean prefix, int limit) {
+        return names().search(query, prefix, limit);
+    }
+
+    @Override
+    void buildNameIndex() { names().build(); }
+
+    @Override
+    boolean isNameIndexBuilt() {
+        NameIndex index = names;
+        return index != null && index.isBuilt();
+    }
+
+    @Override
+    int idCount() { return count; }
+
+    @Override
+    BankAccount accountById(int id) {
+        if (id < 0 || id >= count) throw new IndexOutOfBoundsException("Id " + id);
+        return new Account(id, null);
+    }
+
+    @Override
+    int idOf(String accNo) { return find(accNo); }
+
+    /**
+     * Writes every account in {@code view} to a new checkpoint. Only copying the
+     * order takes the lock; balances are read back through the view while writers
+     * keep going, as in the other store.
+     */
+    @Override
+    void writeSnapshot(Path file, int journalId, long journalPosition, Versions.View view) throws IOException {
+        int[] order = Arrays.stream(order()).filter(id -> view.includes(accNoOf(id))).toArray();
+        Snapshot.write(file, journalId, journalPosition, order.length, new Snapshot.Rows() {
+            @Override
+            public int textLength(int column, int k) {
+                long at = text(order[k]);
+                byte[] page = arena[(int) (at >>> ARENA_BITS)];
+                int p = (int) at & (ARENA_PAGE - 1);
+                return column == 0 ? length(page, p) : length(page, p + 2 + length(page, p));
+            }
+
+            @Override
+            public void putText(int column, int k, ByteBuffer out) {
+                long at = text(order[k]);
+                byte[] page = arena[(int) (at >>> ARENA_BITS)];
+                int p = (int) at & (ARENA_PAGE - 1);
+                if (column == 1) p += 2 + length(page, p);
+                out.put(page, p + 2, length(page, p));
+            }
+
+            @Override
+            public long balance(int k) {
+                int id = order[k];
+                long current = balanceOf(id);
+                return view.balanceOf(accNoOf(id), current);
+            }
+        });
+    }
+
+    /** Like {@link #forEachInOrder}, with the text decoded straight from the arena. */
+    @Override
+    void forEachRow(RowVisitor visitor) throws IOException {
+        for (int id : order()) visitor.row(accNoOf(id), nameOf(id), balanceOf(id));
+    }
+
+    /** A view of one id. It keeps its balance page, so reads and writes need no lock. */
+    private final class Account extends BankAccount {
+        private final int id;
+        private final long[] page;
+        private String accNo;
+
+        Account(int id, String accNo) {
+            super(accNo, null, 0);
+            this.id = id;
+            this.page = balances[id >>> PAGE_BITS];
+            this.accNo = accNo;
+        }
+
+        @Override
+        String getAccNo() {
+            String a = accNo;
+            if (a == null) accNo = a = accNoOf(id);
+            return a;
+        }
+
+        @Override
+        String getName() { return nameOf(id); }
+
+        @Override
+        long getBalance() { return (long) BALANCE.getVolatile(page, id & (PAGE - 1)); }
+
+        @Override
+        void setBalance(long balance) { BALANCE.setVolatile(page, id & (PAGE - 1), balance); }
+
+        private CompactAccountStore owner() { return CompactAccountStore.this; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Account && ((Account) o).id == id && ((Account) o).owner() == owner();
+        }
+
+        @Override
+        public int hashCode() { return id; }
+    }
+
+    /**
+     * Id of the account number, or -1. Probes without locking and checks that no
+     * create ran meanwhile; a create that resized the arrays under the probe can
+     * make it fail any way, so then it probes again under the read lock.
+     */
+    private int find(String accNo) {
+        int hash = hash(accNo);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int id = probe(accNo, hash);
+                if (lock.validate(stamp)) return id;
+            } catch (RuntimeException torn) {
+                // fall through to the locked probe
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(accNo, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int probe(String accNo, int hash) {
+        long[] table = slots;
+        int capacity = table.length;
+        int i = slot(hash, capacity);
+        for (int n = 0; n < capacity; n++) {
+            long s = table[i];
+            if (s == 0) return -1;
+            if ((int) (s >>> 32) == hash) {
+                int id = (int) s - 1;
+                if (compare(id, accNo) == 0) return id;
+            }
+            if (++i == capacity) i = 0;
+        }
+        return -1;
+    }
+
+    /** Adds the account's text, balance and slot, and returns its id. Needs the write lock. */
+    private int append(String accNo, String name, long balance, int hash) {
+        byte[] a = accNo.getBytes(StandardCharsets.UTF_8);
+        byte[] n = name.getBytes(StandardCharsets.UTF_8);
+        if (a.length > MAX_TEXT || n.length > MAX_TEXT)
+            throw new IllegalArgumentException("Account number or name is too long.");
+        int id = count;
+        if (id >= MAX_ID) throw new IllegalStateException("Store is full.");
+
+        if (arenaUsed + 4 + a.length + n.length > ARENA_PAGE) {
+            if (arenaPages == arena.length) arena = Arrays.copyOf(arena, arenaPages * 2);
+            arena[arenaPages++] = new byte[ARENA_PAGE];
+            arenaUsed = 0;
+        }
+        byte[] page = arena[arenaPages - 1];
+        long at = (long) (arenaPages - 1) << ARENA_BITS | arenaUsed;
+        arenaUsed = putText(page, putText(page, arenaUsed, a), n);
+
+        int p = id >>> PAGE_BITS;
+        if (p == balances.length) {
+            balances = Arrays.copyOf(balances, p * 2);
+            texts = Arrays.copyOf(texts, p * 2);
+        }
+        if (balances[p] == null) {
+            balances[p] = new long[PAGE];
+            texts[p] = new long[PAGE];
+        }
+        balances[p][id & (PAGE - 1)] = balance;
+        texts[p][id & (PAGE - 1)] = at;
+
+        if ((long) (id + 1) * 4 > (long) slots.length * 3) slots = rehash(slots, slots.length + (slots.length >> 1));
+        place(slots, (long) hash << 32 | (id + 1));
+        count = id + 1;
+        return id;
+    }
+
+    private static long[] rehash(long[] old, int capacity) {
+        long[] table = new long[capacity];
+        for (long s : old) {
+            if (s != 0) place(table, s);
+        }
+        return table;
+    }
+
+    private static void place(long[] table, long s) {
+        int i = slot((int) (s >>> 32), table.length);
+        while (table[i] != 0) {
+            if (++i == table.length) i = 0;
+        }
+        table[i] = s;
+    }
+
+    /** Puts a new id into the recent run, and the run into the main order once it is long enough. */
+    private void addRecent(int id) {
+        int at = upperBound(recent, 0, recentSize, id);
+        if (recentSize == recent.length) recent = Arrays.copyOf(recent, recentSize * 2);
+        System.arraycopy(recent, at, recent, at + 1, recentSize - at);
+        recent[at] = id;
+        recentSize++;
+        if (recentSize > Math.max(1024, 2 * (int) Math.sqrt(sortedSize))) mergeRecent();
+    }
+
+    /**
+     * Merges the recent run into the main order in place, from the back, so
+     * every main entry moves once and nothing new is allocated unless the
+     * array has to grow.
+     */
+    private void mergeRecent() {
+        int total = sortedSize + recentSize;
+        if (total > sorted.length) sorted = Arrays.copyOf(sorted, Math.max(total, sorted.length + (sorted.length >> 1)));
+        int end = sortedSize;
+        for (int j = recentSize - 1; j >= 0; j--) {
+            int at = upperBound(sorted, 0, end, recent[j]);
+            System.arraycopy(sorted, at, sorted, at + j + 1, end - at);
+            sorted[at + j] = recent[j];
+            end = at;
+        }
+        sortedSize = total;
+        recentSize = 0;
+    }
+
+    /** Every id in account-number order, copied under the read lock. */
+    private int[] order() {
+        long stamp = lock.readLock();
+        try {
+            int[] out = new int[sortedSize + recentSize];
+            int from = 0;
+            int k = 0;
+            for (int j = 0; j < recentSize; j++) {
+                int at = upperBound(sorted, from, sortedSize, recent[j]);
+                System.arraycopy(sorted, from, out, k, at - from);
+                k += at - from;
+                out[k++] = recent[j];
+                from = at;
+            }
+            System.arraycopy(sorted, from, out, k, sortedSize - from);
+            return out;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Id at a position in account-number order. Needs the lock. */
+    private int idAt(int pos) {
+        if (pos < 0 || pos >= sortedSize + recentSize) throw new IndexOutOfBoundsException("Position " + pos);
+        // Recent entry j is at j plus the main entries before it; count the recent entries before pos.
+        int lo = 0;
+        int hi = recentSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = mid + upperBound(sorted, 0, sortedSize, recent[mid]);
+            if (at == pos) return recent[mid];
+            if (at < pos) lo = mid + 1;
+            else hi = mid;
+        }
+        return sorted[pos - lo];
+    }
+
+    /** Position of the account number in sorted order, or {@code -(insertion point) - 1}. Needs the lock. */
+    private int rank(String accNo) {
+        int inSorted = search(sorted, sortedSize, accNo);
+        int inRecent = search(recent, recentSize, accNo);
+        int pos = insertionPoint(inSorted) + insertionPoint(inRecent);
+        return inSorted >= 0 || inRecent >= 0 ? pos : -pos - 1;
+    }
+
+    private int search(int[] ids, int size, String accNo) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(ids[mid], accNo);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /** First index in {@code [from, to)} whose account number sorts after that of {@code id}. */
+    private int upperBound(int[] ids, int from, int to, int id) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (compare(ids[mid], id) < 0) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /** Compares the account number of {@code id} with {@code key} like String.compareTo, without decoding ASCII. */
+    private int compare(int id, String key) {
+        long at = text(id);
+        byte[] page = arena[(int) (at >>> ARENA_BITS)];
+        int start = ((int) at & (ARENA_PAGE - 1)) + 2;
+        int end = start + length(page, start - 2);
+        int p = start;
+        int n = key.length();
+        for (int c = 0; p < end && c < n; p++, c++) {
+            byte b = page[p];
+            if (b < 0) return accNoOf(id).compareTo(key);
+            int d = b - key.charAt(c);
+            if (d != 0) return d;
+        }
+        if (p < end) return 1;
+        return end - start < n ? -1 : 0;
+    }
+
+    private int compare(int a, int b) {
+        long x = text(a);
+        long y = text(b);
+        byte[] pa = arena[(int) (x >>> ARENA_BITS)];
+        byte[] pb = arena[(int) (y >>> ARENA_BITS)];
+        int i = ((int) x & (ARENA_PAGE - 1)) + 2;
+        int j = ((int) y & (ARENA_PAGE - 1)) + 2;
+        int endA = i + length(pa, i - 2);
+        int endB = j + length(pb, j - 2);
+        for (; i < endA && j < endB; i++, j++) {
+            if ((pa[i] | pb[j]) < 0) return accNoOf(a).compareTo(accNoOf(b));
+            int d = pa[i] - pb[j];
+            if (d != 0) return d;
+        }
+        return (endA - i) - (endB - j);
+    }
+
+    private long text(int id) { return texts[id >>> PAGE_BITS][id & (PAGE - 1)]; }
+
+    private long balanceOf(int id) {
+        return (long) BALANCE.getVolatile(balances[id >>> PAGE_BITS], id & (PAGE - 1));
+    }
+
+    private String accNoOf(int id) {
+        long at = text(id);
+        byte[] page = arena[(int) (at >>> ARENA_BITS)];
+        int p = (int) at & (ARENA_PAGE - 1);
+        return new String(page, p + 2, length(page, p), StandardCharsets.UTF_8);
+    }
+
+    private String nameOf(int id) {
+        long at = text(id);
+        byte[] page = arena[(int) (at >>> ARENA_BITS)];
+        int p = (int) at & (ARENA_PAGE - 1);
+        p += 2 + length(page, p);
+        return new String(page, p + 2, length(page, p), StandardCharsets.UTF_8);
+    }
+
+    /** The name index, created on first use over the names added so far. */
+    private NameIndex names() {
+        NameIndex index = names;
+        if (index != null) return index;
+        long stamp = lock.writeLock();
+        try {
+            if (names == null) names = new NameIndex(count, this::nameOf);
+            return names;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int putText(byte[] page, int at, byte[] text) {
+        page[at] = (byte) (text.length >>> 8);
+        page[at + 1] = (byte) text.length;
+        System.arraycopy(text, 0, page, at + 2, text.length);
+        return at + 2 + text.length;
+    }
+
+    /** UTF-8 length of {@code s} without encoding it; an unpaired surrogate counts two bytes too many. */
+    private static int utf8Length(String s) {
+        int n = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) n += Character.isSurrogate(c) ? 1 : 2;
+            else if (c >= 0x80) n++;
+        }
+        return n;
+    }
+
+    private static int length(byte[] page, int at) {
+        return (page[at] & 0xff) << 8 | page[at + 1] & 0xff;
+    }
+
+    private static int hash(String accNo) {
+        int h = accNo.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Maps a hash onto {@code [0, capacity)} by multiplying, so the capacity need not be a power of two. */
+    private static int slot(int hash, int capacity) {
+        return (int) (((hash & 0xffffffffL) * capacity) >>> 32);
+    }
+
+    private static int insertionPoint(int searchResult) {
+        return searchResult < 0 ? -(searchResult + 1) : searchResult;
+    }
+}
@@ -0,0 +1,269 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk import of accounts or deposits/withdrawals from a CSV file. The file is
+ * read in large chunks cut at line ends, the chunks are parsed and validated on
+ * all cores, and the results are applied strictly in file order through
+ * {@link Ledger.Batch}, one journal flush per chunk. Rows break the same rules as
+ * the dialogs for the same reasons, so the report uses the same messages.
+ *
+ * <p>Accounts files have the columns {@code accNo,name,balance}; transaction
+ * files have {@code accNo,type,amount} with type {@code deposit} or
+ * {@code withdraw}. Fields may be double-quoted, but cannot span lines. A first
+ * line whose third column is {@code balance} or {@code amount} is a header.
+ */
+final class CsvImporter {
+    enum Kind { ACCOUNTS, TRANSACTIONS }
+
+    interface Progress {
+        void update(long bytesRead, long totalBytes, long applied, long rejected);
+    }
+
+    static final class Result {
+        long applied;
+        long rejected;
+        boolean cancelled;
+        /** Why no more rows could be applied, or null if the import ran to the end or was cancelled. */
+        String stopped;
+        /** The first {@link #MAX_REPORTED} rejected rows, as "line N: reason". */
+        final List<String> rejects = new ArrayList<>();
+    }
+
+    private static final int CHUNK = 4 << 20;
+    private static final int MAX_REPORTED = 1000;
+
+    /** One parsed line; {@code error} is set instead of the values if it was rejected. */
+    private static final class Row {
+        int line;
+        String accNo;
+        String name;
+        long amount;
+        boolean withdraw;
+        String error;
+    }
+
+    private static final class Chunk {
+        final List<Row> rows = new ArrayList<>();
+        int lines;
+        long bytes;
+    }
+
+    private final Ledger ledger;
+    private final AccountStore store;
+    private volatile boolean cancelled;
+
+    CsvImporter(Ledger ledger, AccountStore store) {
+        this.ledger = ledger;
+        this.store = store;
+    }
+
+    /** Stops the import after the chunk that is being applied. */
+    void cancel() { cancelled = true; }
+
+    Result run(Path file, Kind kind, Progress progress) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        Result result = new Result();
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long[] done = new long[2]; // bytes and lines applied so far
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long total = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            boolean first = true;
+            while (!cancelled && result.stopped == null) {
+                boolean eof = ch.read(buf) < 0;
+                if (!eof && buf.hasRemaining()) continue;
+                int end = buf.position();
+                if (!eof) {
+                    while (end > 0 && buf.get(end - 1) != '\n') end--;
+                    if (end == 0) {
+                        // One line is longer than the buffer: grow it and keep reading.
+                        buf.flip();
+                        buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf);
+                        continue;
+                    }
+                }
+                buf.flip();
+                if (end > 0) {
+                    byte[] bytes = new byte[end];
+                    buf.get(bytes);
+                    boolean firstChunk = first;
+                    inFlight.add(parsers.submit(() -> parse(bytes, kind, firstChunk)));
+                    first = false;
+                }
+                buf.compact();
+                while (!cancelled && result.stopped == null && (inFlight.size() >= threads * 2 || eof && !inFlight.isEmpty())) {
+                    apply(await(inFlight.poll()), kind, result, done);
+                    progress.update(done[0], total, result.applied, result.rejected);
+                }
+                if (eof) break;
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        result.cancelled = cancelled;
+        return result;
+    }
+
+    private static Chunk await(Future<Chunk> parsed) throws IOException, InterruptedException {
+        try {
+            return parsed.get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Could not parse the file.", ex.getCause());
+        }
+    }
+
+    /**
+     * Applies the rows of one chunk and commits them. If the store or the ledger
+     * refuses a row with an {@link IllegalStateException} (the store is full, or
+     * the journal failed), no later row can be applied either: that row is
+     * rejected, the import stops, and the rows before it are still committed.
+     */
+    private void apply(Chunk chunk, Kind kind, Result result, long[] done) {
+        long base = done[1];
+        Ledger.Batch batch = ledger.batch();
+        try {
+            for (Row row : chunk.rows) {
+                String error = row.error;
+                if (error == null) {
+                    try {
+                        if (kind == Kind.ACCOUNTS) {
+                            batch.open(row.accNo, row.name, row.amount);
+                        } else {
+                            BankAccount acc = store.get(row.accNo);
+                            if (acc == null) error = "Account not found.";
+                            else if (row.withdraw) batch.withdraw(acc, row.amount);
+                            else batch.deposit(acc, row.amount);
+                        }
+                    } catch (IllegalArgumentException ex) {
+                        error = ex.getMessage();
+                    } catch (IllegalStateException ex) {
+                        reject(result, base + row.line, ex.getMessage());
+                        result.stopped = ex.getMessage();
+                        return;
+                    }
+                }
+                if (error == null) result.applied++;
+                else reject(result, base + row.line, error);
+            }
+        } finally {
+            batch.commit();
+            done[0] += chunk.bytes;
+            done[1] += chunk.lines;
+        }
+    }
+
+    private static void reject(Result result, long line, String error) {
+        result.rejected++;
+        if (result.rejects.size() < MAX_REPORTED) result.rejects.add("line " + line + ": " + error);
+    }
+
+    private static Chunk parse(byte[] bytes, Kind kind, boolean firstChunk) {
+        Chunk chunk = new Chunk();
+        chunk.bytes = bytes.length;
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int pos = firstChunk && text.startsWith("\uFEFF") ? 1 : 0;
+        int line = 0;
+        List<String> fields = new ArrayList<>(4);
+        while (pos < text.length()) {
+            int nl = text.indexOf('\n', pos);
+            int end = nl < 0 ? text.length() : nl;
+            int stop = end > pos && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            String error = split(text, pos, stop, fields);
+            pos = end + 1;
+            line++;
+            if (error == null && fields.size() == 1 && fields.get(0).isBlank()) continue;
+            if (error == null && firstChunk && line == 1 && fields.size() == 3) {
+                String third = fields.get(2).trim();
+                if (third.equalsIgnoreCase("balance") || third.equalsIgnoreCase("amount")) continue;
+            }
+            Row row = new Row();
+            row.line = line;
+            if (error != null) row.error = error;
+            else if (fields.size() != 3) row.error = "Expected 3 fields, found " + fields.size() + ".";
+            else if (kind == Kind.ACCOUNTS) validateAccount(fields, row);
+            else validateTransaction(fields, row);
+            chunk.rows.add(row);
+        }
+        chunk.lines = line;
+        return chunk;
+    }
+
+    private static void validateAccount(List<String> fields, Row row) {
+        row.accNo = fields.get(0).trim();
+        row.name = fields.get(1).trim();
+        if (row.accNo.isEmpty() || row.name.isEmpty()) {
+            row.error = "Account number and name are required.";
+            return;
+        }
+        try {
+            row.amount = Money.parseCents(fields.get(2));
+            if (row.amount < 0) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            row.error = "Initial balance must be a non-negative number.";
+        }
+    }
+
+    private static void validateTransaction(List<String> fields, Row row) {
+        row.accNo = fields.get(0).trim();
+        String type = fields.get(1).trim();
+        if (row.accNo.isEmpty()) {
+            row.error = "Account number is required.";
+        } else if (type.equalsIgnoreCase("withdraw") || type.equalsIgnoreCase("deposit")) {
+            row.withdraw = type.equalsIgnoreCase("withdraw");
+            try {
+                row.amount = Money.parseCents(fields.get(2));
+            } catch (NumberFormatException ex) {
+                row.error = "Enter a valid number.";
+            }
+        } else {
+            row.error = "Type must be deposit or withdraw.";
+        }
+    }
+
+    /** Splits {@code s[from, to)} at commas into {@code out}; returns an error message or null. */
+    private static String split(String s, int from, int to, List<String> out) {
+        out.clear();
+        int i = from;
+        while (true) {
+            while (i < to && s.charAt(i) == ' ') i++;
+            if (i < to && s.charAt(i) == '"') {
+                StringBuilder field = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= to) return "Unclosed quote.";
+                    char c = s.charAt(i++);
+                    if (c != '"') field.append(c);
+                    else if (i < to && s.charAt(i) == '"') field.append(s.charAt(i++));
+                    else break;
+                }
+                while (i < to && s.charAt(i) == ' ') i++;
+                if (i < to && s.charAt(i) != ',') return "Text after a closing quote.";
+                out.add(field.toString());
+            } else {
+                int comma = s.indexOf(',', i);
+                if (comma < 0 || comma > to) comma = to;
+                out.add(s.substring(i, comma));
+                i = comma;
+            }
+            if (i >= to) return null;
+            i++;
+        }
+    }
+}
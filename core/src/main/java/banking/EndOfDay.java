@@ -0,0 +1,202 @@
+package banking;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-of-day run over every account: a day's interest is credited and, below a
+ * minimum balance, a maintenance fee is charged, as one net deposit or
+ * withdrawal per account.
+ *
+ * <p>The accounts are split into ranges of name-index ids, which only ever
+ * grow, so the run covers exactly the accounts that existed when it started;
+ * accounts opened during the run are left for the next one. The ranges are
+ * processed with fork/join on all cores, each leaf through its own
+ * {@link Ledger.Batch} with one journal flush. Every adjustment is worked out
+ * under the account's lock from its balance at that moment, so tellers can
+ * keep working and each of their changes lands either before or after the
+ * adjustment, never inside it.
+ *
+ * <p>The summary carries a checksum over (account number, change, balance
+ * after) of every adjusted account. It is a sum of per-account hashes, so it
+ * does not depend on how the work was split or on thread timing, and it can be
+ * recomputed from the journal to check a run.
+ */
+final class EndOfDay {
+    interface Progress {
+        void update(long processed, long total);
+    }
+
+    /** What a run applies to each account. */
+    static final class Rates {
+        private static final long DAY_DIVISOR = 365 * 10_000L;
+
+        /** Yearly interest in basis points (250 is 2.5%); a day earns 1/365 of it, rounded down to the centavo. */
+        final long interestBasisPoints;
+        /** Fee in centavos, never more than the account holds after its interest. */
+        final long fee;
+        /** Accounts with at least this balance, in centavos, pay no fee. */
+        final long feeWaivedAt;
+
+        Rates(long interestBasisPoints, long fee, long feeWaivedAt) {
+            if (interestBasisPoints < 0 || interestBasisPoints > 100_000)
+                throw new IllegalArgumentException("Interest must be between 0% and 1000% a year.");
+            if (fee < 0) throw new IllegalArgumentException("Fee cannot be negative.");
+            if (feeWaivedAt < 0) throw new IllegalArgumentException("Fee-free balance cannot be negative.");
+            this.interestBasisPoints = interestBasisPoints;
+            this.fee = fee;
+            this.feeWaivedAt = feeWaivedAt;
+        }
+
+        /** A day's interest on {@code balance}, split to stay within a long for any balance. */
+        long interest(long balance) {
+            if (balance <= 0) return 0;
+            return balance / DAY_DIVISOR * interestBasisPoints
+                    + balance % DAY_DIVISOR * interestBasisPoints / DAY_DIVISOR;
+        }
+
+        /** The fee for an account that holds {@code available} after its interest. */
+        long fee(long balance, long available) {
+            return balance >= feeWaivedAt ? 0 : Math.min(fee, available);
+        }
+    }
+
+    static final class Result {
+        long accounts;
+        long credited;
+        long interest;
+        long debited;
+        long fees;
+        /** Accounts whose adjustment was refused, such as interest past the maximum balance. */
+        long failed;
+        long checksum;
+        long nanos;
+        boolean cancelled;
+
+        void add(Result other) {
+            accounts += other.accounts;
+            credited += other.credited;
+            interest += other.interest;
+            debited += other.debited;
+            fees += other.fees;
+            failed += other.failed;
+            checksum += other.checksum;
+        }
+
+        String checksumHex() { return String.format("%016x", checksum); }
+    }
+
+    /** Accounts per leaf task, and per journal flush. */
+    private static final int PARTITION = 8192;
+
+    private final Ledger ledger;
+    private final AccountStore store;
+    private final Rates rates;
+    private final AtomicLong processed = new AtomicLong();
+    private volatile boolean cancelled;
+    private Progress progress;
+    private int total;
+
+    EndOfDay(Ledger ledger, Rates rates) {
+        this.ledger = ledger;
+        this.store = ledger.store();
+        this.rates = rates;
+    }
+
+    /** Stops the run after the ranges already started; what they applied stays applied. */
+    void cancel() { cancelled = true; }
+
+    /** Runs once; {@code progress} is called from the worker threads as each range finishes. */
+    Result run(Progress progress) {
+        long start = System.nanoTime();
+        this.progress = progress;
+        total = store.idCount();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        Result result;
+        try {
+            result = pool.invoke(new Range(0, total));
+        } finally {
+            pool.shutdown();
+        }
+        result.cancelled = cancelled;
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private final class Range extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from > PARTITION) {
+                int mid = (from + to) >>> 1;
+                Range left = new Range(from, mid);
+                left.fork();
+                Result right = new Range(mid, to).compute();
+                Result both = left.join();
+                both.add(right);
+                return both;
+            }
+            Result r = new Result();
+            if (cancelled) return r;
+            apply(r);
+            progress.update(processed.addAndGet(to - from), total);
+            return r;
+        }
+
+        private void apply(Result r) {
+            Ledger.Batch batch = ledger.batch();
+            long[] parts = new long[3]; // interest, fee and balance after, set under the account's lock
+            for (int id = from; id < to; id++) {
+                BankAccount acc = store.accountById(id);
+                long delta;
+                try {
+                    delta = batch.adjust(acc, balance -> {
+                        long interest = rates.interest(balance);
+                        long fee = rates.fee(balance, balance + interest);
+                        parts[0] = interest;
+                        parts[1] = fee;
+                        parts[2] = balance + interest - fee;
+                        return interest - fee;
+                    });
+                } catch (IllegalArgumentException ex) {
+                    r.failed++;
+                    continue;
+                }
+                r.accounts++;
+                if (parts[0] > 0) {
+                    r.credited++;
+                    r.interest += parts[0];
+                }
+                if (parts[1] > 0) {
+                    r.debited++;
+                    r.fees += parts[1];
+                }
+                if (delta != 0) r.checksum += hash(acc.getAccNo(), delta, parts[2]);
+            }
+            batch.commit();
+        }
+    }
+
+    private static long hash(String accNo, long delta, long balance) {
+        return mix(mix(accNo.hashCode() * 0x9e3779b97f4a7c15L ^ delta) ^ balance);
+    }
+
+    /** The 64-bit finalizer from MurmurHash3. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53ca3e19e0fL;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,233 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only copy of the {@link TransactionHistory} up to a checkpoint,
+ * memory-mapped straight from disk, so the history does not have to be read
+ * back out of the journal on every start.
+ *
+ * <p>The file is columnar like a {@link Snapshot}: a 48-byte header (magic,
+ * version, account count, journal id and position, creation time, account-number
+ * bytes) followed by the first entry of each account ({@code long[count + 1]}),
+ * the account-number offsets ({@code int[count + 1]}), the UTF-8 account numbers
+ * and then every entry as {@link TransactionHistory#WORDS} longs, each
+ * account's entries together and oldest first. Accounts are sorted by account
+ * number. Opening one reads only the header; an account's entries are paged in
+ * when they are first asked for.
+ */
+final class HistorySnapshot {
+    private static final long MAGIC = 0x5342484953540000L; // "SBHIST"
+    private static final int VERSION = 1;
+    private static final int HEADER = 48;
+    private static final int ENTRY_BYTES = 8 * TransactionHistory.WORDS;
+    /** Entries per mapping of the entry column, so that no mapping reaches 2 GiB. */
+    private static final int SLICE_BITS = 25;
+    private static final long SLICE_MASK = (1L << SLICE_BITS) - 1;
+
+    private final int count;
+    private final int journalId;
+    private final long journalPosition;
+    private final MappedByteBuffer starts;
+    private final MappedByteBuffer accNoOffsets;
+    private final MappedByteBuffer accNos;
+    private final MappedByteBuffer[] entries;
+
+    private HistorySnapshot(FileChannel ch, ByteBuffer header) throws IOException {
+        count = header.getInt(12);
+        journalId = header.getInt(16);
+        journalPosition = header.getLong(24);
+        int accNoBytes = header.getInt(40);
+
+        long p = HEADER;
+        starts = ch.map(FileChannel.MapMode.READ_ONLY, p, 8L * (count + 1));
+        p += 8L * (count + 1);
+        accNoOffsets = ch.map(FileChannel.MapMode.READ_ONLY, p, 4L * (count + 1));
+        p += 4L * (count + 1);
+        accNos = ch.map(FileChannel.MapMode.READ_ONLY, p, accNoBytes);
+        p += accNoBytes;
+        long total = starts.getLong(8 * count);
+        entries = new MappedByteBuffer[(int) ((total + SLICE_MASK) >>> SLICE_BITS)];
+        for (int i = 0; i < entries.length; i++) {
+            long n = Math.min(1L << SLICE_BITS, total - ((long) i << SLICE_BITS));
+            entries[i] = ch.map(FileChannel.MapMode.READ_ONLY, p, n * ENTRY_BYTES);
+            p += n * ENTRY_BYTES;
+        }
+        if (p != ch.size()) throw new IOException("History file size does not match its header.");
+    }
+
+    static HistorySnapshot open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) throw new IOException("History file header is truncated.");
+            }
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION)
+                throw new IOException("Not a ledger history file: " + file);
+            return new HistorySnapshot(ch, header);
+        }
+    }
+
+    /** Id of the journal this history was taken from. */
+    int journalId() { return journalId; }
+
+    /** Journal position whose earlier records are all in this history. */
+    long journalPosition() { return journalPosition; }
+
+    String accNo(int i) {
+        int start = accNoOffsets.getInt(4 * i);
+        byte[] b = new byte[accNoOffsets.getInt(4 * i + 4) - start];
+        accNos.get(start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Index of the account number, or {@code -(insertion point) - 1}. */
+    int find(String accNo) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = accNo(mid).compareTo(accNo);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /** First entry of account {@code i}; its entries run up to the first entry of {@code i + 1}. */
+    long start(int i) { return starts.getLong(8 * i); }
+
+    /** Word {@code w} of entry {@code e}. */
+    long word(long e, int w) {
+        return entries[(int) (e >>> SLICE_BITS)].getLong((int) (e & SLICE_MASK) * ENTRY_BYTES + 8 * w);
+    }
+
+    /** Copies {@code n} entries from entry {@code e} on into {@code to} at word {@code at}. */
+    void copy(long e, int n, long[] to, int at) {
+        for (int i = 0; i < n; i++)
+            for (int w = 0; w < TransactionHistory.WORDS; w++) to[at++] = word(e + i, w);
+    }
+
+    /**
+     * Writes a history file holding {@code previous} with, for each account in
+     * {@code accNos}, the entries of {@code added} after the ones it already had,
+     * as a new generation of {@code file}, and returns that. {@code accNos} is
+     * sorted and {@code added[j]} holds {@link TransactionHistory#WORDS} longs
+     * per entry.
+     */
+    static Path write(Path file, int journalId, long journalPosition, HistorySnapshot previous,
+                      String[] accNos, long[][] added) throws IOException {
+        int baseCount = previous == null ? 0 : previous.count;
+
+        // Row k takes the entries of previous account fromPrevious[k] and of accNos[fromAdded[k]], either may be -1.
+        int[] fromPrevious = new int[baseCount + accNos.length];
+        int[] fromAdded = new int[baseCount + accNos.length];
+        byte[][] addedAccNos = new byte[accNos.length][];
+        int k = 0;
+        int next = 0;
+        for (int j = 0; j < accNos.length; j++) {
+            int found = previous == null ? -1 : previous.find(accNos[j]);
+            int upTo = found >= 0 ? found : -(found + 1);
+            while (next < upTo) {
+                fromPrevious[k] = next++;
+                fromAdded[k++] = -1;
+            }
+            fromPrevious[k] = found >= 0 ? next++ : -1;
+            fromAdded[k++] = j;
+            addedAccNos[j] = accNos[j].getBytes(StandardCharsets.UTF_8);
+        }
+        while (next < baseCount) {
+            fromPrevious[k] = next++;
+            fromAdded[k++] = -1;
+        }
+        int count = k;
+
+        long accNoBytes = 0;
+        for (k = 0; k < count; k++) {
+            int e = fromPrevious[k];
+            accNoBytes += e >= 0 ? previous.accNoLength(e) : addedAccNos[fromAdded[k]].length;
+        }
+        if (accNoBytes > Integer.MAX_VALUE) throw new IOException("History account-number column is larger than 2 GiB.");
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+            out.putLong(MAGIC).putInt(VERSION).putInt(count).putInt(journalId).putInt(0)
+                    .putLong(journalPosition).putLong(System.currentTimeMillis())
+                    .putInt((int) accNoBytes).putInt(0);
+
+            long entry = 0;
+            for (k = 0; k < count; k++) {
+                out = Snapshot.ensure(ch, out, 8);
+                out.putLong(entry);
+                int e = fromPrevious[k];
+                if (e >= 0) entry += previous.start(e + 1) - previous.start(e);
+                if (fromAdded[k] >= 0) entry += added[fromAdded[k]].length / TransactionHistory.WORDS;
+            }
+            out = Snapshot.ensure(ch, out, 8);
+            out.putLong(entry);
+
+            int offset = 0;
+            out = Snapshot.ensure(ch, out, 4);
+            out.putInt(0);
+            for (k = 0; k < count; k++) {
+                int e = fromPrevious[k];
+                offset += e >= 0 ? previous.accNoLength(e) : addedAccNos[fromAdded[k]].length;
+                out = Snapshot.ensure(ch, out, 4);
+                out.putInt(offset);
+            }
+            for (k = 0; k < count; k++) {
+                int e = fromPrevious[k];
+                byte[] b = e >= 0 ? null : addedAccNos[fromAdded[k]];
+                out = Snapshot.ensure(ch, out, b != null ? b.length : previous.accNoLength(e));
+                if (b != null) out.put(b);
+                else previous.putAccNo(e, out);
+            }
+            for (k = 0; k < count; k++) {
+                int e = fromPrevious[k];
+                if (e >= 0) out = previous.putEntries(previous.start(e), previous.start(e + 1), ch, out);
+                if (fromAdded[k] < 0) continue;
+                for (long word : added[fromAdded[k]]) {
+                    out = Snapshot.ensure(ch, out, 8);
+                    out.putLong(word);
+                }
+            }
+            Snapshot.drain(ch, out);
+            ch.force(true);
+        }
+        return Snapshot.publish(tmp, file);
+    }
+
+    private int accNoLength(int i) {
+        return accNoOffsets.getInt(4 * i + 4) - accNoOffsets.getInt(4 * i);
+    }
+
+    private void putAccNo(int i, ByteBuffer out) {
+        int start = accNoOffsets.getInt(4 * i);
+        int len = accNoLength(i);
+        out.put(out.position(), accNos, start, len);
+        out.position(out.position() + len);
+    }
+
+    /** Copies entries {@code [from, to)} into {@code out}, a mapping slice at a time. */
+    private ByteBuffer putEntries(long from, long to, FileChannel ch, ByteBuffer out) throws IOException {
+        while (from < to) {
+            out = Snapshot.ensure(ch, out, ENTRY_BYTES);
+            long inSlice = (1L << SLICE_BITS) - (from & SLICE_MASK);
+            int n = (int) Math.min(Math.min(to - from, inSlice), out.remaining() / ENTRY_BYTES);
+            int len = n * ENTRY_BYTES;
+            out.put(out.position(), entries[(int) (from >>> SLICE_BITS)], (int) (from & SLICE_MASK) * ENTRY_BYTES, len);
+            out.position(out.position() + len);
+            from += n;
+        }
+        return out;
+    }
+}
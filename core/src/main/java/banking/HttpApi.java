@@ -0,0 +1,316 @@
+package banking;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP/JSON API over a {@link Bank}, on the JDK's built-in server and
+ * bound to the loopback address only.
+ *
+ * <pre>
+ * GET  /accounts?offset=0&amp;limit=100     accounts in account-number order
+ * GET  /accounts/{accNo}                 one account
+ * POST /accounts                         {"accNo": "...", "name": "...", "balance": "100.00"}
+ * POST /accounts/{accNo}/deposit         {"amount": "25.50"}
+ * POST /accounts/{accNo}/withdraw        {"amount": "25.50"}
+ * GET  /stats?top=10                     totals, balance bands, largest and smallest accounts
+ * GET  /metrics                          the plain-text metrics report
+ * </pre>
+ *
+ * Amounts are decimal strings or numbers with at most two decimals, and
+ * balances come back as decimal strings, so no amount goes through a double.
+ * Errors are {@code {"error": "..."}} with 400 for invalid input, 404 for an
+ * unknown account and 503 when the ledger cannot take the change or the stats
+ * are still being calculated after a start. A 500 means
+ * the change was applied but its journal record could not be saved, so it must
+ * not be sent again.
+ *
+ * <p>Each request calls the {@link Ledger} directly and waits for its journal
+ * flush, so concurrent requests share group commits. The handlers run on
+ * virtual threads when the JDK has them (21 and later). Older JDKs get a
+ * fixed pool of {@code bank.http.threads} platform threads instead.
+ */
+final class HttpApi implements Closeable {
+    static final int MAX_LIMIT = 1000;
+    private static final int MAX_BODY = 64 << 10;
+    private static final int POOL_THREADS = Integer.getInteger("bank.http.threads", 256);
+
+    private final Bank bank;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+
+    private HttpApi(Bank bank, int port) throws IOException {
+        this.bank = bank;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        handlers = handlerThreads();
+        server.setExecutor(handlers);
+        server.createContext("/accounts", this::accounts);
+        server.createContext("/stats", this::stats);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    /** Starts serving on {@code port} (0 picks a free one) and closes with the bank. */
+    static HttpApi start(Bank bank, int port) throws IOException {
+        HttpApi api = new HttpApi(bank, port);
+        api.server.start();
+        bank.closeWith(api);
+        return api;
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    /** Stops accepting requests and gives the ones in flight a second to finish. */
+    @Override
+    public void close() {
+        server.stop(1);
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() { return "HTTP API on port " + port(); }
+
+    private static ExecutorService handlerThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(POOL_THREADS, r -> {
+                Thread t = new Thread(r, "http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void accounts(HttpExchange ex) throws IOException {
+        try {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            // "/accounts/A1/deposit" splits into "", "accounts", "A1", "deposit"
+            String method = ex.getRequestMethod();
+            if (parts.length == 2 && method.equals("GET")) list(ex);
+            else if (parts.length == 2 && method.equals("POST")) create(ex);
+            else if (parts.length == 3 && method.equals("GET")) show(ex, account(parts[2]));
+            else if (parts.length == 4 && method.equals("POST") && parts[3].equals("deposit")) move(ex, account(parts[2]), true);
+            else if (parts.length == 4 && method.equals("POST") && parts[3].equals("withdraw")) move(ex, account(parts[2]), false);
+            else error(ex, 404, "No such endpoint.");
+        } catch (NotFound nf) {
+            error(ex, 404, "Account not found.");
+        } catch (IllegalArgumentException bad) {
+            error(ex, 400, bad.getMessage());
+        } catch (Ledger.NotDurableException applied) {
+            error(ex, 500, applied.getMessage());
+        } catch (UncheckedIOException | IllegalStateException failed) {
+            error(ex, 503, failed.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void stats(HttpExchange ex) throws IOException {
+        try {
+            int top = Math.min(intParam(query(ex.getRequestURI()), "top", 10), 256);
+            BalanceStats stats = bank.ledger().stats();
+            List<BalanceStats.Leader> largest = bank.ledger().largest(top);
+            List<BalanceStats.Leader> smallest = bank.ledger().smallest(top);
+            if (largest == null || smallest == null)
+                throw new IllegalStateException("The balance stats are still being calculated.");
+            StringBuilder sb = new StringBuilder(256 + top * 96);
+            sb.append("{\"accounts\":").append(stats.accounts()).append(",\"total\":\"");
+            appendDecimal(sb, stats.total()).append("\",\"bands\":[");
+            long[] bands = stats.bands();
+            for (int i = 0; i < bands.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"from\":\"");
+                appendDecimal(sb, BalanceStats.BAND_FLOORS[i]).append("\",\"accounts\":").append(bands[i]).append('}');
+            }
+            sb.append("],\"largest\":");
+            appendLeaders(sb, largest);
+            sb.append(",\"smallest\":");
+            appendLeaders(sb, smallest);
+            send(ex, 200, "application/json", sb.append('}').toString());
+        } catch (IllegalArgumentException bad) {
+            error(ex, 400, bad.getMessage());
+        } catch (IllegalStateException calculating) {
+            error(ex, 503, calculating.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void appendLeaders(StringBuilder sb, List<BalanceStats.Leader> leaders) {
+        sb.append('[');
+        for (int i = 0; i < leaders.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"accNo\":");
+            Json.appendString(sb, leaders.get(i).accNo);
+            sb.append(",\"balance\":\"");
+            appendDecimal(sb, leaders.get(i).balance).append("\"}");
+        }
+        sb.append(']');
+    }
+
+    private void metrics(HttpExchange ex) throws IOException {
+        try {
+            send(ex, 200, "text/plain; charset=utf-8", bank.metrics().report());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void list(HttpExchange ex) throws IOException {
+        Map<String, String> query = query(ex.getRequestURI());
+        int offset = intParam(query, "offset", 0);
+        int limit = Math.min(intParam(query, "limit", 100), MAX_LIMIT);
+        AccountStore store = bank.store();
+        int total = store.size();
+        StringBuilder sb = new StringBuilder(64 + Math.max(0, Math.min(limit, total - offset)) * 64);
+        sb.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"accounts\":[");
+        int end = Math.min(total, offset + limit);
+        for (int pos = offset; pos < end; pos++) {
+            if (pos > offset) sb.append(',');
+            appendAccount(sb, store.accountAt(pos));
+        }
+        sb.append("]}");
+        send(ex, 200, "application/json", sb.toString());
+    }
+
+    private void create(HttpExchange ex) throws IOException {
+        Map<String, String> body = body(ex);
+        String accNo = required(body, "accNo").trim();
+        String name = required(body, "name").trim();
+        String balance = body.getOrDefault("balance", "0");
+        long start = System.nanoTime();
+        BankAccount acc;
+        try {
+            acc = bank.ledger().open(accNo, name, Money.parseCents(balance));
+        } catch (RuntimeException e) {
+            bank.metrics().error(Metrics.Kind.CREATE);
+            throw e;
+        }
+        bank.metrics().recordSince(Metrics.Kind.CREATE, start);
+        ex.getResponseHeaders().set("Location", "/accounts/" + acc.getAccNo());
+        send(ex, 201, "application/json", appendAccount(new StringBuilder(), acc).toString());
+    }
+
+    private void show(HttpExchange ex, BankAccount acc) throws IOException {
+        send(ex, 200, "application/json", appendAccount(new StringBuilder(), acc).toString());
+    }
+
+    private void move(HttpExchange ex, BankAccount acc, boolean deposit) throws IOException {
+        long amount = Money.parseCents(required(body(ex), "amount"));
+        Metrics.Kind kind = deposit ? Metrics.Kind.DEPOSIT : Metrics.Kind.WITHDRAW;
+        long start = System.nanoTime();
+        try {
+            if (deposit) bank.ledger().deposit(acc, amount);
+            else bank.ledger().withdraw(acc, amount);
+        } catch (RuntimeException e) {
+            bank.metrics().error(kind);
+            throw e;
+        }
+        bank.metrics().recordSince(kind, start);
+        show(ex, acc);
+    }
+
+    private static final class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFound() { super(null, null, false, false); }
+    }
+
+    private BankAccount account(String accNo) {
+        BankAccount acc = bank.store().get(accNo);
+        if (acc == null) throw new NotFound();
+        return acc;
+    }
+
+    private static StringBuilder appendAccount(StringBuilder sb, BankAccount acc) {
+        sb.append("{\"accNo\":");
+        Json.appendString(sb, acc.getAccNo());
+        sb.append(",\"name\":");
+        Json.appendString(sb, acc.getName());
+        sb.append(",\"balance\":\"");
+        return appendDecimal(sb, acc.getBalance()).append("\"}");
+    }
+
+    /** Centavos as a plain decimal such as {@code 1234.05}, with no grouping or peso sign. */
+    static StringBuilder appendDecimal(StringBuilder sb, long cents) {
+        if (cents < 0) sb.append('-');
+        long abs = Math.abs(cents);
+        sb.append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) throw new IllegalArgumentException("Missing field \"" + field + "\".");
+        return value;
+    }
+
+    private static Map<String, String> body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) throw new IllegalArgumentException("Request body is too large.");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String q = uri.getQuery();
+        if (q == null) return params;
+        for (String pair : q.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int otherwise) {
+        String value = query.get(name);
+        if (value == null) return otherwise;
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) return n;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException("\"" + name + "\" must be a whole number of 0 or more.");
+    }
+
+    private static void error(HttpExchange ex, int status, String message) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.appendString(sb, message == null ? "Request failed." : message);
+        send(ex, status, "application/json", sb.append('}').toString());
+    }
+
+    private static void send(HttpExchange ex, int status, String type, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
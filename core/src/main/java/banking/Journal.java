@@ -0,0 +1,607 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of every ledger change, written through a
+ * memory-mapped {@link FileChannel}.
+ *
+ * <p>The file starts with a 24-byte header (magic, version, random journal id,
+ * segment number) followed by records of
+ * {@code [int length][int crc32c][payload]}. The file is mapped in 64 MiB chunks and
+ * a record never spans two chunks: a length of -1 means "continue at the next
+ * chunk" and a length of 0 marks the end of the journal. Each record carries the
+ * balance after the change, so replaying one simply sets balances and can be
+ * repeated safely.
+ *
+ * <p>Once a checkpoint covers the start of the journal, {@link #roll} drops
+ * that part: the records after the checkpoint are copied into a new file, one
+ * segment number higher and named for it ({@code ledger.journal.3}), and the
+ * old file is deleted. A position carries the segment number in its high bits,
+ * so positions keep growing across rolls and a checkpoint's position says which
+ * segment it was taken in.
+ *
+ * <p>Appending only copies bytes into the mapping under a short lock. Durability
+ * is a separate {@link #awaitDurable} step that uses group commit: one caller
+ * forces everything written so far while the others wait, so many concurrent
+ * transactions share one flush.
+ */
+final class Journal implements Closeable {
+    static final byte CREATE = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte TRANSFER = 4;
+
+    private static final long MAGIC = 0x53424a524e4c0000L; // "SBJRNL"
+    private static final int VERSION = 2;
+    private static final int HEADER = 24;
+    /** Header of a version 1 journal, which had no segment number. */
+    private static final int HEADER_V1 = 16;
+    /** Bits of a position that hold the offset in its segment's file; the segment number is above them. */
+    private static final int SEGMENT_BITS = 40;
+    private static final long OFFSET_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int CHUNK = 64 << 20;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_TEXT = 4096;
+    // type + timestamp + 3 longs + two length-prefixed strings of up to 3 bytes per char
+    private static final int MAX_PAYLOAD = 1 + 8 * 4 + 2 * (2 + 3 * MAX_TEXT);
+
+    /** One decoded record. The same instance is reused for every record during replay. */
+    static final class Entry {
+        byte type;
+        long timestamp;
+        String accNo;
+        /** Account name for {@link #CREATE}. */
+        String name;
+        /** Receiving account for {@link #TRANSFER}. */
+        String toAccNo;
+        long amount;
+        /** Balance of {@link #accNo} after the change. */
+        long balance;
+        /** Balance of {@link #toAccNo} after a transfer. */
+        long toBalance;
+    }
+
+    private final Path file;
+    /** The current segment's file and its channel; replaced, under the append lock, only by {@link #roll}. */
+    private Path segmentFile;
+    private FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final byte[] scratch = new byte[MAX_PAYLOAD];
+    private final CRC32C crc = new CRC32C();
+    private int id;
+    private long segment;
+    /** Offset of the first record in the file. */
+    private int start;
+    /** Positions of the first record and of where {@link #open} started its replay. */
+    private long firstRecord;
+    private long replayStart;
+    /** Offset in the current segment's file. */
+    private long writePos;
+    private boolean closed;
+
+    private final Object syncMonitor = new Object();
+    private long durablePos;
+    private boolean syncing;
+
+    private Journal(Path file, Path segmentFile, FileChannel channel) {
+        this.file = file;
+        this.segmentFile = segmentFile;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens or creates the journal, feeds every intact record to {@code replay}
+     * in order and positions the journal for appending after the last one. A
+     * torn or corrupt tail left by a crash ends the replay and is overwritten.
+     * If {@code checkpoint} was taken from this journal, replay starts at its
+     * position instead of at the beginning. Older segments a roll could not
+     * delete are deleted here.
+     */
+    static Journal open(Path file, Snapshot checkpoint, Consumer<Entry> replay) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path segmentFile = Snapshot.latest(file);
+        if (segmentFile == null) segmentFile = Snapshot.generation(file, 0);
+        FileChannel channel = FileChannel.open(segmentFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Journal journal = new Journal(file, segmentFile, channel);
+            journal.recover(channel.size() == 0, checkpoint, replay);
+            Snapshot.deleteOthers(file, segmentFile);
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private void recover(boolean fresh, Snapshot checkpoint, Consumer<Entry> replay) throws IOException {
+        MappedByteBuffer first = chunk(0);
+        if (fresh) {
+            id = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+            start = HEADER;
+            writeHeader(first, id, 0);
+        } else if (first.getLong(0) != MAGIC || first.getInt(8) < 1 || first.getInt(8) > VERSION) {
+            throw new IOException("Not a ledger journal: " + segmentFile);
+        } else {
+            id = first.getInt(12);
+            start = first.getInt(8) == 1 ? HEADER_V1 : HEADER;
+            segment = first.getInt(8) == 1 ? 0 : first.getLong(16);
+        }
+
+        long pos = start;
+        if (checkpoint != null && checkpoint.journalId() == id) {
+            long at = checkpoint.journalPosition();
+            if (at >>> SEGMENT_BITS > segment) throw new IOException("The journal is older than the checkpoint: " + segmentFile);
+            // A checkpoint from an earlier segment is the one this segment was rolled at.
+            if (at >>> SEGMENT_BITS == segment) pos = Math.max(pos, at & OFFSET_MASK);
+        } else if (segment > 0) {
+            throw new IOException("The journal continues a checkpoint that is missing or unreadable: " + segmentFile);
+        }
+        long base = segment << SEGMENT_BITS;
+        firstRecord = base + start;
+        replayStart = base + pos;
+        pos = scan(this::chunk, pos, Long.MAX_VALUE, scratch, crc, replay);
+
+        // Clear whatever a torn write left behind so it cannot be mistaken for
+        // a record once new appends land in front of it.
+        MappedByteBuffer buf = chunk(pos / CHUNK);
+        int off = (int) (pos % CHUNK);
+        int end = (int) Math.min(CHUNK, (long) off + RECORD_HEADER + MAX_PAYLOAD);
+        for (int i = off; i < end; i++) buf.put(i, (byte) 0);
+        buf.force(off, end - off);
+
+        writePos = pos;
+        durablePos = base + pos;
+    }
+
+    private static void writeHeader(MappedByteBuffer first, int id, long segment) {
+        first.putLong(0, MAGIC);
+        first.putInt(8, VERSION);
+        first.putInt(12, id);
+        first.putLong(16, segment);
+        first.force(0, HEADER);
+    }
+
+    private interface Chunks {
+        MappedByteBuffer get(long index) throws IOException;
+    }
+
+    /**
+     * Feeds the intact records from {@code pos} on to {@code visitor}, stopping
+     * at {@code end}, at the end of the journal or at the first torn or corrupt
+     * record, and returns the position it stopped at.
+     */
+    private static long scan(Chunks chunks, long pos, long end, byte[] scratch, CRC32C crc,
+                             Consumer<Entry> visitor) throws IOException {
+        Entry entry = new Entry();
+        while (pos < end) {
+            MappedByteBuffer buf = chunks.get(pos / CHUNK);
+            int off = (int) (pos % CHUNK);
+            if (off + RECORD_HEADER > CHUNK) {
+                pos = nextChunk(pos);
+                continue;
+            }
+            int len = buf.getInt(off);
+            if (len == -1) {
+                pos = nextChunk(pos);
+                continue;
+            }
+            if (len <= 0 || len > MAX_PAYLOAD || off + RECORD_HEADER + len > CHUNK) break;
+            buf.get(off + RECORD_HEADER, scratch, 0, len);
+            crc.reset();
+            crc.update(scratch, 0, len);
+            if ((int) crc.getValue() != buf.getInt(off + 4)) break;
+            decode(scratch, len, entry);
+            visitor.accept(entry);
+            pos += RECORD_HEADER + len;
+        }
+        return pos;
+    }
+
+    /** Position {@link #open} started its replay at: the checkpoint's, or the first record if it covers nothing here. */
+    long replayStart() { return replayStart; }
+
+    /** Whether {@code pos} is the position of the first record in the file, as it is right after a roll to it. */
+    boolean startsAt(long pos) {
+        appendLock.lock();
+        try {
+            return (segment << SEGMENT_BITS) + start == pos;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** Whether the journal still holds records from {@code from} on that the checkpoint covers. */
+    boolean hasCheckpointed(long from) {
+        return Math.max(from, firstRecord) < replayStart;
+    }
+
+    /**
+     * Feeds {@code visitor} the records from {@code from}, or from the first one
+     * this file holds, up to the position {@link #open} started its replay at:
+     * the ones the checkpoint already covers. It reads through read-only mappings
+     * of its own, so it can run on any thread while transactions are being
+     * appended, but not across a {@link #roll}.
+     */
+    void readCheckpointed(long from, Consumer<Entry> visitor) throws IOException {
+        long pos = Math.max(from, firstRecord);
+        if (pos >= replayStart) return;
+        scan(readOnly(channel), pos & OFFSET_MASK, replayStart & OFFSET_MASK,
+                new byte[MAX_PAYLOAD], new CRC32C(), visitor);
+    }
+
+    /** Chunks of {@code ch} through read-only mappings, keeping the last one mapped. */
+    private static Chunks readOnly(FileChannel ch) {
+        MappedByteBuffer[] mapped = new MappedByteBuffer[1];
+        long[] mappedIndex = {-1};
+        return index -> {
+            if (index != mappedIndex[0]) {
+                mapped[0] = ch.map(FileChannel.MapMode.READ_ONLY, index * CHUNK, CHUNK);
+                mappedIndex[0] = index;
+            }
+            return mapped[0];
+        };
+    }
+
+    /**
+     * Drops the records in front of {@code pos}, which a checkpoint now covers.
+     * The records after it are copied into a new file for the next segment,
+     * which then takes over from this one. Appends only wait while the records that
+     * arrived during the copy are copied too. Returns the position {@code pos}
+     * has in the new segment.
+     */
+    long roll(long pos) throws IOException {
+        long durable;
+        synchronized (syncMonitor) {
+            while (syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal.", ex);
+                }
+            }
+            // Holding the flush itself keeps every other flush away from the old file.
+            syncing = true;
+            durable = durablePos;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".next");
+        FileChannel next = null;
+        Path old;
+        long rolled;
+        try {
+            long base = segment << SEGMENT_BITS;
+            if (pos >>> SEGMENT_BITS != segment || (pos & OFFSET_MASK) < start)
+                throw new IllegalArgumentException("Position " + pos + " is not in the current journal segment.");
+            next = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel target = next;
+            List<MappedByteBuffer> copies = new ArrayList<>();
+            Chunks to = index -> {
+                while (copies.size() <= index)
+                    copies.add(target.map(FileChannel.MapMode.READ_WRITE, (long) copies.size() * CHUNK, CHUNK));
+                return copies.get((int) index);
+            };
+            writeHeader(to.get(0), id, segment + 1);
+            Chunks from = readOnly(channel);
+            long upTo = position() - base;
+            long at = copy(from, pos - base, upTo, to, HEADER);
+
+            appendLock.lock();
+            try {
+                at = copy(from, upTo, writePos, to, at);
+                for (MappedByteBuffer buf : copies) buf.force();
+                // The old file too, in case the new one does not survive a crash.
+                force(durable - base, writePos);
+                Path nextFile = Snapshot.generation(file, segment + 1);
+                Snapshot.replace(tmp, nextFile);
+                channel.close();
+                old = segmentFile;
+                segmentFile = nextFile;
+                channel = next;
+                next = null;
+                chunks.clear();
+                segment++;
+                start = HEADER;
+                firstRecord = (segment << SEGMENT_BITS) + HEADER;
+                writePos = at;
+                durable = (segment << SEGMENT_BITS) + at;
+                rolled = (segment << SEGMENT_BITS) + HEADER;
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            if (next != null) {
+                next.close();
+                Files.deleteIfExists(tmp);
+            }
+            synchronized (syncMonitor) {
+                durablePos = durable;
+                syncing = false;
+                syncMonitor.notifyAll();
+            }
+        }
+        try {
+            Files.deleteIfExists(old);
+        } catch (IOException stillMapped) {
+            // Windows keeps a mapped file until its mappings are collected; open deletes it then.
+        }
+        return rolled;
+    }
+
+    /**
+     * Copies the records in {@code [pos, end)} to {@code at} onwards, keeping
+     * them out of chunk boundaries, and returns the offset after the last one.
+     */
+    private static long copy(Chunks from, long pos, long end, Chunks to, long at) throws IOException {
+        while (pos < end) {
+            MappedByteBuffer buf = from.get(pos / CHUNK);
+            int off = (int) (pos % CHUNK);
+            int len = off + RECORD_HEADER > CHUNK ? -1 : buf.getInt(off);
+            if (len == -1) {
+                pos = nextChunk(pos);
+                continue;
+            }
+            int size = RECORD_HEADER + len;
+            int o = (int) (at % CHUNK);
+            if (o + size > CHUNK) {
+                if (o + 4 <= CHUNK) to.get(at / CHUNK).putInt(o, -1);
+                at = nextChunk(at);
+                o = 0;
+            }
+            to.get(at / CHUNK).put(o, buf, off, size);
+            pos += size;
+            at += size;
+        }
+        return at;
+    }
+
+    /** Forces the bytes in {@code [from, to)} of the current file. Called with the append lock held. */
+    private void force(long from, long to) throws IOException {
+        for (long c = from / CHUNK; c * CHUNK < to; c++) {
+            int s = (int) Math.max(from - c * CHUNK, 0);
+            int e = (int) Math.min(to - c * CHUNK, CHUNK);
+            if (e > s) chunk(c).force(s, e - s);
+        }
+    }
+
+    private MappedByteBuffer chunk(long index) throws IOException {
+        while (chunks.size() <= index) chunks.add(null);
+        MappedByteBuffer buf = chunks.get((int) index);
+        if (buf == null) {
+            buf = channel.map(FileChannel.MapMode.READ_WRITE, index * CHUNK, CHUNK);
+            chunks.set((int) index, buf);
+        }
+        return buf;
+    }
+
+    private static long nextChunk(long pos) { return (pos / CHUNK + 1) * CHUNK; }
+
+    long appendCreate(long time, String accNo, String name, long balance) {
+        return append(CREATE, time, accNo, name, 0, balance, 0);
+    }
+
+    long appendDeposit(long time, String accNo, long amount, long balance) {
+        return append(DEPOSIT, time, accNo, null, amount, balance, 0);
+    }
+
+    long appendWithdraw(long time, String accNo, long amount, long balance) {
+        return append(WITHDRAW, time, accNo, null, amount, balance, 0);
+    }
+
+    long appendTransfer(long time, String from, String to, long amount, long fromBalance, long toBalance) {
+        return append(TRANSFER, time, from, to, amount, fromBalance, toBalance);
+    }
+
+    /** Random id written when the journal was created; checkpoints record it. Rolls keep it. */
+    int id() { return id; }
+
+    /** Journal position just past the last appended record. */
+    long position() {
+        appendLock.lock();
+        try {
+            return (segment << SEGMENT_BITS) + writePos;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Copies one record into the mapping and returns the position just past it.
+     * The record is not durable until {@link #awaitDurable} returns for that
+     * position.
+     */
+    private long append(byte type, long time, String accNo, String text, long amount, long balance, long toBalance) {
+        appendLock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Journal is closed.");
+            int len = 0;
+            scratch[len++] = type;
+            len = putLong(len, time);
+            len = putLong(len, amount);
+            len = putLong(len, balance);
+            if (type == TRANSFER) len = putLong(len, toBalance);
+            len = putText(len, accNo);
+            if (text != null) len = putText(len, text);
+            crc.reset();
+            crc.update(scratch, 0, len);
+
+            int off = (int) (writePos % CHUNK);
+            if (off + RECORD_HEADER + len > CHUNK) {
+                if (off + 4 <= CHUNK) chunk(writePos / CHUNK).putInt(off, -1);
+                writePos = nextChunk(writePos);
+                off = 0;
+            }
+            MappedByteBuffer buf = chunk(writePos / CHUNK);
+            buf.put(off + RECORD_HEADER, scratch, 0, len);
+            buf.putInt(off + 4, (int) crc.getValue());
+            buf.putInt(off, len);
+            writePos += RECORD_HEADER + len;
+            return (segment << SEGMENT_BITS) + writePos;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not extend the journal.", ex);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until everything up to {@code pos} is on disk. The first caller to
+     * find no flush in progress becomes the leader and forces all records
+     * written so far; callers that arrive meanwhile wait and are usually covered
+     * by that same flush.
+     */
+    void awaitDurable(long pos) {
+        long from;
+        synchronized (syncMonitor) {
+            while (true) {
+                if (durablePos >= pos) return;
+                if (!syncing) break;
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal.", ex);
+                }
+            }
+            syncing = true;
+            from = durablePos;
+        }
+
+        long target = from;
+        try {
+            List<MappedByteBuffer> dirty = new ArrayList<>(2);
+            long base;
+            long end;
+            appendLock.lock();
+            try {
+                // Only a roll changes the segment, and it holds the flush while it does.
+                base = segment << SEGMENT_BITS;
+                end = writePos;
+                target = base + end;
+                for (long c = (from - base) / CHUNK; c <= (end - 1) / CHUNK; c++) dirty.add(chunk(c));
+                // Chunks that are completely behind this flush will not be written again.
+                for (long c = (from - base) / CHUNK; c < end / CHUNK; c++) chunks.set((int) c, null);
+            } finally {
+                appendLock.unlock();
+            }
+            long begin = from - base;
+            long chunkStart = begin / CHUNK * CHUNK;
+            for (MappedByteBuffer buf : dirty) {
+                int s = (int) Math.max(begin - chunkStart, 0);
+                int e = (int) Math.min(end - chunkStart, CHUNK);
+                if (e > s) buf.force(s, e - s);
+                chunkStart += CHUNK;
+            }
+        } catch (IOException ex) {
+            target = from;
+            throw new UncheckedIOException("Could not flush the journal.", ex);
+        } finally {
+            synchronized (syncMonitor) {
+                durablePos = target;
+                syncing = false;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        awaitDurable(position());
+        appendLock.lock();
+        try {
+            closed = true;
+            chunks.clear();
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private int putLong(int pos, long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) scratch[pos++] = (byte) (v >>> shift);
+        return pos;
+    }
+
+    private static long getLong(byte[] scratch, int pos) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (scratch[pos + i] & 0xFF);
+        return v;
+    }
+
+    /** Writes {@code s} as a two-byte length followed by UTF-8, without going through getBytes(). */
+    private int putText(int pos, String s) {
+        if (s.length() > MAX_TEXT)
+            throw new IllegalArgumentException("Text longer than " + MAX_TEXT + " characters.");
+        int p = pos + 2;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                scratch[p++] = (byte) c;
+            } else if (c < 0x800) {
+                scratch[p++] = (byte) (0xC0 | c >> 6);
+                scratch[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                scratch[p++] = (byte) (0xF0 | cp >> 18);
+                scratch[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                scratch[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                scratch[p++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                scratch[p++] = '?';
+            } else {
+                scratch[p++] = (byte) (0xE0 | c >> 12);
+                scratch[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                scratch[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        int len = p - pos - 2;
+        scratch[pos] = (byte) (len >>> 8);
+        scratch[pos + 1] = (byte) len;
+        return p;
+    }
+
+    private static void decode(byte[] scratch, int len, Entry e) throws IOException {
+        int p = 0;
+        e.type = scratch[p++];
+        e.timestamp = getLong(scratch, p);
+        e.amount = getLong(scratch, p + 8);
+        e.balance = getLong(scratch, p + 16);
+        p += 24;
+        if (e.type == TRANSFER) {
+            e.toBalance = getLong(scratch, p);
+            p += 8;
+        }
+        int n = (scratch[p] & 0xFF) << 8 | scratch[p + 1] & 0xFF;
+        e.accNo = new String(scratch, p + 2, n, StandardCharsets.UTF_8);
+        p += 2 + n;
+        e.name = null;
+        e.toAccNo = null;
+        if (e.type == CREATE || e.type == TRANSFER) {
+            n = (scratch[p] & 0xFF) << 8 | scratch[p + 1] & 0xFF;
+            String text = new String(scratch, p + 2, n, StandardCharsets.UTF_8);
+            if (e.type == CREATE) e.name = text;
+            else e.toAccNo = text;
+            p += 2 + n;
+        }
+        if (p != len || e.type < CREATE || e.type > TRANSFER)
+            throw new IOException("Malformed journal record of type " + e.type + ".");
+    }
+}
@@ -0,0 +1,124 @@
+package banking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for {@link HttpApi}: request bodies are flat objects whose
+ * values are strings, numbers, booleans or null, and responses are built by
+ * appending to a StringBuilder. Numbers are kept as their source text so
+ * amounts can go straight to {@link Money#parseCents}.
+ */
+final class Json {
+    private Json() {}
+
+    /** Parses a flat object into field → value text; null values are left out. */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = string(text, pos);
+                expect(text, pos, ':');
+                String value = value(text, pos);
+                if (value != null) fields.put(key, value);
+                char c = peek(text, pos);
+                pos[0]++;
+                if (c == '}') break;
+                if (c != ',') throw error("Expected , or } at " + (pos[0] - 1) + ".");
+            }
+        }
+        if (skipSpace(text, pos[0]) != text.length()) throw error("Unexpected text after the object.");
+        return fields;
+    }
+
+    static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String value(String text, int[] pos) {
+        char c = peek(text, pos);
+        if (c == '"') return string(text, pos);
+        if (c == '{' || c == '[') throw error("Nested objects and arrays are not supported.");
+        int start = pos[0];
+        int end = start;
+        while (end < text.length() && ",}] \t\r\n".indexOf(text.charAt(end)) < 0) end++;
+        if (end == start) throw error("Expected a value at " + start + ".");
+        pos[0] = end;
+        String literal = text.substring(start, end);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String string(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= text.length()) throw error("Unclosed string.");
+            char c = text.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= text.length()) throw error("Unclosed string.");
+            char e = text.charAt(i++);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 > text.length()) throw error("Bad \\u escape.");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Bad \\u escape.");
+                    }
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        pos[0] = i;
+        return sb.toString();
+    }
+
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipSpace(text, pos[0]);
+        if (pos[0] >= text.length()) throw error("Unexpected end of JSON.");
+        return text.charAt(pos[0]);
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (peek(text, pos) != c) throw error("Expected " + c + " at " + pos[0] + ".");
+        pos[0]++;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON: " + message);
+    }
+}
@@ -0,0 +1,110 @@
+package banking;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Values fall into
+ * log-linear buckets: eight per power of two, so a reported percentile is
+ * within 12.5% of the real one. The range goes from 1 ns to centuries in 488
+ * buckets. Recording is a single atomic increment plus an adder, so any
+ * number of threads can record at the same time without blocking each other.
+ * Readers take a {@link Counts} copy and work on that.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    // Values are never negative, so bit 62 is the highest and the last bucket is 60 * SUB + SUB - 1.
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucketOf(nanos));
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    /** Copy of the current counts. Taken bucket by bucket, so it is not atomic, but no count is ever lost. */
+    Counts counts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = buckets.get(i);
+        return new Counts(copy, sum.sum(), max.get());
+    }
+
+    private static int bucketOf(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /** Largest value that falls into bucket {@code i}. */
+    private static long highestIn(int i) {
+        if (i < SUB) return i;
+        int exp = i / SUB + SUB_BITS - 1;
+        long low = (long) (SUB + i % SUB) << (exp - SUB_BITS);
+        return low + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Immutable bucket counts. Counts can be added up across histograms, and an
+     * earlier copy can be subtracted to get only what was recorded in between.
+     */
+    static final class Counts {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Counts(long[] buckets, long sum, long max) {
+            this.buckets = buckets;
+            long n = 0;
+            for (long c : buckets) n += c;
+            this.count = n;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        long count() { return count; }
+
+        long mean() { return count == 0 ? 0 : sum / count; }
+
+        /** Largest value recorded; for a difference, the top of its highest bucket. */
+        long max() { return max; }
+
+        /** Value at or below which {@code percent} of the values fall, e.g. 99 for p99; 0 if empty. */
+        long percentile(double percent) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(highestIn(i), max);
+            }
+            return max;
+        }
+
+        Counts plus(Counts other) {
+            long[] b = buckets.clone();
+            for (int i = 0; i < b.length; i++) b[i] += other.buckets[i];
+            return new Counts(b, sum + other.sum, Math.max(max, other.max));
+        }
+
+        /** What was recorded after {@code earlier}, which must be an older copy of the same histogram. */
+        Counts since(Counts earlier) {
+            long[] b = new long[buckets.length];
+            int top = -1;
+            for (int i = 0; i < b.length; i++) {
+                b[i] = buckets[i] - earlier.buckets[i];
+                if (b[i] > 0) top = i;
+            }
+            return new Counts(b, sum - earlier.sum, top < 0 ? 0 : Math.min(highestIn(top), max));
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package banking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Thread-safe money movement on top of an {@link AccountStore}. Accounts are
+ * guarded by a fixed array of lock stripes chosen by account number, so
+ * operations on different accounts rarely contend and memory does not grow
+ * with the number of accounts. A transfer locks both stripes in index order,
+ * which rules out deadlock between opposite transfers.
+ *
+ * <p>When a {@link Journal} is attached, every change is appended while the
+ * stripe is held, so the journal order matches the order balances changed in.
+ * The call then waits for the journal to flush, after releasing the lock, before
+ * it returns or notifies listeners. Without a journal (benchmarks) the ledger is
+ * purely in memory.
+ *
+ * <p>If that flush fails, the change has already been applied. Listeners are
+ * still told about it, the caller gets a {@link NotDurableException} saying so,
+ * and the ledger refuses every later change: the journal can no longer promise
+ * that what it holds is on disk, so nothing more should be built on it.
+ *
+ * <p>When a {@link TransactionHistory} is attached, every change is also recorded
+ * there under the same lock and with the same timestamp as its journal record.
+ *
+ * <p>The {@link BalanceStats} are updated under the same locks too, so totals
+ * and the largest and smallest accounts never need a scan of the store on
+ * anyone's path; when they have to be rebuilt, that runs in the background.
+ *
+ * <p>Every balance is set through {@link Versions} as well, so reports can
+ * read all accounts as of one moment from a {@link #view()} without stopping
+ * anyone.
+ */
+final class Ledger {
+    private static final int STRIPES = 1024;
+    private static final int BATCH_EVENTS = 256;
+
+    private final AccountStore store;
+    private final Journal journal;
+    private final TransactionHistory history;
+    private final BalanceStats stats = new BalanceStats();
+    private final AtomicBoolean rebuildingStats = new AtomicBoolean();
+    private final Versions versions;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    /** The failed journal flush that stopped the ledger, or null while it accepts changes. */
+    private volatile UncheckedIOException failure;
+
+    /**
+     * A change that was applied, and announced to listeners, but whose journal
+     * record could not be flushed. It must not be retried: the money has moved,
+     * it is only not known to be on disk.
+     */
+    static final class NotDurableException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        NotDurableException(UncheckedIOException cause) {
+            super("The change was applied but could not be saved to the journal: " + cause.getMessage(), cause);
+        }
+    }
+
+    Ledger(AccountStore store, Journal journal) {
+        this(store, journal, null);
+    }
+
+    Ledger(AccountStore store, Journal journal, TransactionHistory history) {
+        this.store = store;
+        this.journal = journal;
+        this.history = history;
+        versions = new Versions(store, STRIPES);
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    AccountStore store() { return store; }
+
+    /** The attached history, or null if none is kept. */
+    TransactionHistory history() { return history; }
+
+    /**
+     * Running totals over all balances. They cover changes made through this
+     * ledger; after accounts are loaded some other way, call
+     * {@link #rebuildStats()} once, and they are ready when that is done.
+     */
+    BalanceStats stats() { return stats; }
+
+    /**
+     * Every account and balance as of now, for reports and exports that read
+     * many accounts while changes go on. Close the view when done; old
+     * balances are kept only while some view still needs them.
+     */
+    Versions.View view() { return versions.view(); }
+
+    /**
+     * Opens an account. These are the same rules the Create Account dialog
+     * shows to the user: number and name are required, the number must be new
+     * and the opening balance cannot be negative.
+     */
+    BankAccount open(String accNo, String name, long initialBalance) {
+        commit(applyOpen(accNo, name, initialBalance, true));
+        return store.get(accNo);
+    }
+
+    void deposit(BankAccount acc, long amount) {
+        long pos = applyDeposit(acc, amount);
+        try {
+            commit(pos);
+        } finally {
+            store.fireBalanceChanged(acc);
+        }
+    }
+
+    void withdraw(BankAccount acc, long amount) {
+        long pos = applyWithdraw(acc, amount);
+        try {
+            commit(pos);
+        } finally {
+            store.fireBalanceChanged(acc);
+        }
+    }
+
+    /** Whether a failed journal flush has stopped the ledger from taking changes. */
+    boolean isFailed() { return failure != null; }
+
+    /**
+     * Groups many changes behind one journal flush, for bulk work such as
+     * imports. Every change is validated, locked and journaled exactly like its
+     * single version; nothing is guaranteed durable or announced until
+     * {@link #commit()}. A small batch is announced account by account, a large
+     * one as a single {@code accountsChanged}. Changes are announced even when
+     * the commit throws {@link NotDurableException}, since they were applied.
+     */
+    final class Batch {
+        private long pos;
+        private final List<BankAccount> created = new ArrayList<>();
+        private final List<BankAccount> changed = new ArrayList<>();
+        private int changes;
+
+        void open(String accNo, String name, long initialBalance) {
+            pos = Math.max(pos, applyOpen(accNo, name, initialBalance, false));
+            if (++changes <= BATCH_EVENTS) created.add(store.get(accNo));
+        }
+
+        void deposit(BankAccount acc, long amount) {
+            pos = Math.max(pos, applyDeposit(acc, amount));
+            if (++changes <= BATCH_EVENTS) changed.add(acc);
+        }
+
+        void withdraw(BankAccount acc, long amount) {
+            pos = Math.max(pos, applyWithdraw(acc, amount));
+            if (++changes <= BATCH_EVENTS) changed.add(acc);
+        }
+
+        /**
+         * Changes the balance by {@code adjustment.applyAsLong(balance)}, worked
+         * out while the account's lock is held, so it is based on the balance
+         * after every change made before it. A positive result is applied as a
+         * deposit and a negative one as a withdrawal; zero changes nothing.
+         * Returns the change.
+         */
+        long adjust(BankAccount acc, LongUnaryOperator adjustment) {
+            long delta;
+            checkWritable();
+            ReentrantLock lock = locks[stripe(acc.getAccNo())];
+            lock.lock();
+            try {
+                delta = adjustment.applyAsLong(acc.getBalance());
+                if (delta == 0) return 0;
+                pos = Math.max(pos, delta > 0 ? deposited(acc, delta) : withdrawn(acc, -delta));
+            } finally {
+                lock.unlock();
+            }
+            if (++changes <= BATCH_EVENTS) changed.add(acc);
+            return delta;
+        }
+
+        void commit() {
+            try {
+                Ledger.this.commit(pos);
+            } finally {
+                if (changes > BATCH_EVENTS) {
+                    store.fireAccountsChanged();
+                } else {
+                    for (BankAccount acc : created) store.fireAccountCreated(acc);
+                    for (BankAccount acc : changed) store.fireBalanceChanged(acc);
+                }
+            }
+        }
+    }
+
+    Batch batch() { return new Batch(); }
+
+    /** Moves money between two accounts; either both balances change or neither does. */
+    void transfer(BankAccount from, BankAccount to, long amount) {
+        if (from.getAccNo().equals(to.getAccNo())) throw new IllegalArgumentException("Cannot transfer to the same account.");
+        if (amount <= 0) throw new IllegalArgumentException("Transfer must be greater than 0.");
+        checkWritable();
+
+        int a = stripe(from.getAccNo());
+        int b = stripe(to.getAccNo());
+        ReentrantLock first = locks[Math.min(a, b)];
+        ReentrantLock second = locks[Math.max(a, b)];
+        long pos = 0;
+        first.lock();
+        if (second != first) second.lock();
+        try {
+            long fromBefore = from.getBalance();
+            long toBefore = to.getBalance();
+            long fromAfter = from.balanceAfterWithdraw(amount);
+            long toAfter = to.balanceAfterDeposit(amount);
+            long now = System.currentTimeMillis();
+            if (journal != null)
+                pos = journal.appendTransfer(now, from.getAccNo(), to.getAccNo(), amount, fromAfter, toAfter);
+            versions.enter(a);
+            if (b != a) versions.enter(b);
+            try {
+                long version = versions.stamp();
+                versions.changing(version, from.getAccNo(), fromBefore);
+                versions.changing(version, to.getAccNo(), toBefore);
+                from.setBalance(fromAfter);
+                to.setBalance(toAfter);
+            } finally {
+                if (b != a) versions.exit(b);
+                versions.exit(a);
+            }
+            stats.changed(from.getAccNo(), fromBefore, fromAfter);
+            stats.changed(to.getAccNo(), toBefore, toAfter);
+            if (history != null) {
+                history.record(from.getAccNo(), now, TransactionHistory.TRANSFER_OUT, amount, fromAfter);
+                history.record(to.getAccNo(), now, TransactionHistory.TRANSFER_IN, amount, toAfter);
+            }
+        } finally {
+            if (second != first) second.unlock();
+            first.unlock();
+        }
+        try {
+            commit(pos);
+        } finally {
+            store.fireBalanceChanged(from);
+            store.fireBalanceChanged(to);
+        }
+    }
+
+    /** A view of every balance and the journal position it matches exactly. */
+    static final class Checkpoint implements AutoCloseable {
+        final Versions.View view;
+        final long position;
+        /** The {@link TransactionHistory#cut} at the same point, or 0 without a history. */
+        final long historyCut;
+
+        Checkpoint(Versions.View view, long position, long historyCut) {
+            this.view = view;
+            this.position = position;
+            this.historyCut = historyCut;
+        }
+
+        @Override
+        public void close() { view.close(); }
+    }
+
+    /**
+     * Opens a view for a checkpoint together with the journal position it
+     * covers. All stripes are held for the instant it takes, so every change
+     * journaled before the position is in the view and in the history before
+     * the cut, and none after it is; writers pause only for that instant. Close
+     * it when done.
+     */
+    Checkpoint checkpoint() {
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            return new Checkpoint(versions.view(), journal.position(), history != null ? history.cut() : 0);
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) locks[i].unlock();
+        }
+    }
+
+    /**
+     * Recounts the {@link #stats()} from the store on a background thread and
+     * returns at once; they are not {@link BalanceStats#isReady ready} until it
+     * is done. For after the accounts were loaded some other way.
+     */
+    void rebuildStats() {
+        rebuildStats(true);
+    }
+
+    /**
+     * Rebuilds the stats from a {@link #view()} on a background thread, unless a
+     * rebuild is running already. Every stripe is held only for the instants it
+     * takes to open the view and to swap the result in; the pass over the
+     * accounts holds none. With {@code recount} false only the top lists are
+     * rebuilt.
+     */
+    private void rebuildStats(boolean recount) {
+        if (!rebuildingStats.compareAndSet(false, true)) return;
+        Versions.View view;
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            view = versions.view();
+            stats.beginRebuild(recount);
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) locks[i].unlock();
+        }
+        Thread rebuilder = new Thread(() -> {
+            try (view) {
+                stats.scan(view);
+                for (ReentrantLock lock : locks) lock.lock();
+                try {
+                    stats.finishRebuild();
+                } finally {
+                    for (int i = STRIPES - 1; i >= 0; i--) locks[i].unlock();
+                }
+            } catch (IOException | RuntimeException ex) {
+                stats.abandonRebuild();
+                System.err.println("Could not rebuild the balance stats: " + ex);
+            } finally {
+                rebuildingStats.set(false);
+            }
+        }, "stats-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+    }
+
+    /**
+     * The {@code n} largest accounts (at most 256), largest first, or null while
+     * they are being worked out again in the background.
+     */
+    List<BalanceStats.Leader> largest(int n) {
+        List<BalanceStats.Leader> top = stats.largest(n);
+        if (top == null) rebuildStats(!stats.isReady());
+        return top;
+    }
+
+    /**
+     * The {@code n} smallest accounts (at most 256), smallest first, or null
+     * while they are being worked out again in the background.
+     */
+    List<BalanceStats.Leader> smallest(int n) {
+        List<BalanceStats.Leader> top = stats.smallest(n);
+        if (top == null) rebuildStats(!stats.isReady());
+        return top;
+    }
+
+    private long applyOpen(String accNo, String name, long initialBalance, boolean notify) {
+        if (accNo.isBlank() || name.isBlank()) throw new IllegalArgumentException("Account number and name are required.");
+        if (initialBalance < 0) throw new IllegalArgumentException("Initial balance must be a non-negative number.");
+        checkWritable();
+        long pos = 0;
+        ReentrantLock lock = locks[stripe(accNo)];
+        lock.lock();
+        try {
+            // Anything the store would refuse is refused before the journal has the record,
+            // or replaying that record would fail on every later start.
+            store.checkCreate(accNo, name);
+            long now = System.currentTimeMillis();
+            if (journal != null) pos = journal.appendCreate(now, accNo, name, initialBalance);
+            BankAccount acc;
+            int s = stripe(accNo);
+            versions.enter(s);
+            try {
+                versions.opening(versions.stamp(), accNo);
+                acc = store.create(accNo, name, initialBalance, notify);
+            } finally {
+                versions.exit(s);
+            }
+            stats.opened(accNo, initialBalance);
+            if (history != null) history.record(acc.getAccNo(), now, TransactionHistory.OPEN, initialBalance, initialBalance);
+        } finally {
+            lock.unlock();
+        }
+        return pos;
+    }
+
+    private long applyDeposit(BankAccount acc, long amount) {
+        checkWritable();
+        ReentrantLock lock = locks[stripe(acc.getAccNo())];
+        lock.lock();
+        try {
+            return deposited(acc, amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long applyWithdraw(BankAccount acc, long amount) {
+        checkWritable();
+        ReentrantLock lock = locks[stripe(acc.getAccNo())];
+        lock.lock();
+        try {
+            return withdrawn(acc, amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deposits with the account's stripe already held; returns the journal position. */
+    private long deposited(BankAccount acc, long amount) {
+        long pos = 0;
+        long before = acc.getBalance();
+        long after = acc.balanceAfterDeposit(amount);
+        long now = System.currentTimeMillis();
+        if (journal != null) pos = journal.appendDeposit(now, acc.getAccNo(), amount, after);
+        setBalance(acc, before, after);
+        stats.changed(acc.getAccNo(), before, after);
+        if (history != null) history.record(acc.getAccNo(), now, TransactionHistory.DEPOSIT, amount, after);
+        return pos;
+    }
+
+    /** Withdraws with the account's stripe already held; returns the journal position. */
+    private long withdrawn(BankAccount acc, long amount) {
+        long pos = 0;
+        long before = acc.getBalance();
+        long after = acc.balanceAfterWithdraw(amount);
+        long now = System.currentTimeMillis();
+        if (journal != null) pos = journal.appendWithdraw(now, acc.getAccNo(), amount, after);
+        setBalance(acc, before, after);
+        stats.changed(acc.getAccNo(), before, after);
+        if (history != null) history.record(acc.getAccNo(), now, TransactionHistory.WITHDRAW, amount, after);
+        return pos;
+    }
+
+    /** Sets a balance with the account's stripe held, saving the old one for any open view. */
+    private void setBalance(BankAccount acc, long before, long after) {
+        int s = stripe(acc.getAccNo());
+        versions.enter(s);
+        try {
+            versions.changing(versions.stamp(), acc.getAccNo(), before);
+            acc.setBalance(after);
+        } finally {
+            versions.exit(s);
+        }
+    }
+
+    private void commit(long pos) {
+        if (journal == null) return;
+        try {
+            journal.awaitDurable(pos);
+        } catch (UncheckedIOException ex) {
+            if (failure == null) {
+                failure = ex;
+                System.err.println("Journal flush failed; the ledger accepts no more changes: " + ex.getCause());
+            }
+            throw new NotDurableException(ex);
+        }
+    }
+
+    private void checkWritable() {
+        UncheckedIOException failed = failure;
+        if (failed != null)
+            throw new IllegalStateException("No changes are accepted after the journal failed to save: "
+                    + failed.getMessage() + " Restart the bank.", failed);
+    }
+
+    /**
+     * Applies one journal record to a store that is being rebuilt at startup,
+     * before any listener is attached, and records it in {@code history} if
+     * that is not null.
+     */
+    static void replay(AccountStore store, TransactionHistory history, Journal.Entry e) {
+        if (e.type == Journal.CREATE) {
+            BankAccount existing = store.get(e.accNo);
+            if (existing == null) store.create(e.accNo, e.name, e.balance);
+            else existing.setBalance(e.balance);
+        } else {
+            replayedAccount(store, e.accNo).setBalance(e.balance);
+            if (e.type == Journal.TRANSFER) replayedAccount(store, e.toAccNo).setBalance(e.toBalance);
+        }
+        if (history != null) record(history, e);
+    }
+
+    /** Records one journal record in {@code history}. */
+    static void record(TransactionHistory history, Journal.Entry e) {
+        switch (e.type) {
+            case Journal.CREATE:
+                history.record(e.accNo, e.timestamp, TransactionHistory.OPEN, e.balance, e.balance);
+                break;
+            case Journal.DEPOSIT:
+                history.record(e.accNo, e.timestamp, TransactionHistory.DEPOSIT, e.amount, e.balance);
+                break;
+            case Journal.WITHDRAW:
+                history.record(e.accNo, e.timestamp, TransactionHistory.WITHDRAW, e.amount, e.balance);
+                break;
+            default:
+                history.record(e.accNo, e.timestamp, TransactionHistory.TRANSFER_OUT, e.amount, e.balance);
+                history.record(e.toAccNo, e.timestamp, TransactionHistory.TRANSFER_IN, e.amount, e.toBalance);
+        }
+    }
+
+    private static BankAccount replayedAccount(AccountStore store, String accNo) {
+        BankAccount acc = store.get(accNo);
+        if (acc == null) throw new IllegalStateException("Journal refers to unknown account " + accNo + ".");
+        return acc;
+    }
+
+    private static int stripe(String accNo) {
+        int h = accNo.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
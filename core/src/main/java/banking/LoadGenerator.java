@@ -0,0 +1,427 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic load for soak tests, run headless with
+ * {@code java -jar simple-banking-app.jar --soak [seconds]}. It opens a bank in
+ * a new temporary data directory, with the journal and checkpoints working as
+ * usual, creates the accounts and then drives a mix of operations at them:
+ * <ul>
+ * <li>{@code deposit} and {@code withdraw}: one random account, random amount;
+ * <li>{@code transfer}: between two random accounts;
+ * <li>{@code hot}: withdrawals and deposits, three to two, on a few hot accounts
+ *     that start nearly empty, so concurrent withdrawals fight over the last of
+ *     the money and some are refused.
+ * </ul>
+ * Each worker follows a fixed schedule for its share of the target rate and
+ * times every operation from when it was due, not from when it was sent, so a
+ * stall shows in the latency of everything queued behind it instead of just
+ * in fewer operations.
+ *
+ * <p>Afterwards every balance is checked against the operations that
+ * succeeded on it, along with the total, the running {@link BalanceStats}, a
+ * {@link Versions.View} and the balances read back after reopening the bank
+ * from disk. {@link #run} prints the report and returns whether all of them
+ * held, so a script can fail on it.
+ *
+ * <p>Settings are system properties: {@code bank.soak.accounts} (10000),
+ * {@code bank.soak.hot} (4), {@code bank.soak.threads} (32),
+ * {@code bank.soak.rate} in operations per second (10000, 0 for as fast as
+ * possible), {@code bank.soak.amount} as the largest amount (100.00) and
+ * {@code bank.soak.mix} ({@code deposit:40,withdraw:40,transfer:10,hot:10}).
+ * {@code bank.soak.keep=true} leaves the data directory behind.
+ */
+final class LoadGenerator {
+    enum Op {
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw"),
+        TRANSFER("transfer"),
+        HOT("hot");
+
+        final String label;
+
+        Op(String label) { this.label = label; }
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final long INITIAL_BALANCE = 1_000_00L;
+    private static final long HOT_BALANCE = 500_00L;
+    private static final int CREATE_BATCH = 8192;
+    private static final long PROGRESS_NANOS = 5_000_000_000L;
+
+    /** What to run, read from the {@code bank.soak.*} properties. */
+    static final class Config {
+        final double seconds;
+        final int accounts;
+        final int hotAccounts;
+        final int threads;
+        /** Operations per second over all workers, or 0 for no limit. */
+        final double rate;
+        /** Largest amount moved by one operation, in centavos. */
+        final long maxAmount;
+        /** Relative weight of each {@link Op}, by ordinal. */
+        final int[] weights;
+
+        Config(double seconds, int accounts, int hotAccounts, int threads, double rate, long maxAmount, int[] weights) {
+            if (!(seconds > 0)) throw new IllegalArgumentException("Duration must be more than 0 seconds.");
+            if (accounts < 2) throw new IllegalArgumentException("At least 2 accounts are needed.");
+            if (hotAccounts < 1) throw new IllegalArgumentException("At least 1 hot account is needed.");
+            if (threads < 1) throw new IllegalArgumentException("At least 1 thread is needed.");
+            if (rate < 0) throw new IllegalArgumentException("Rate cannot be negative.");
+            if (maxAmount <= 0) throw new IllegalArgumentException("Amount must be greater than 0.");
+            int sum = 0;
+            for (int w : weights) {
+                if (w < 0) throw new IllegalArgumentException("Mix weights cannot be negative.");
+                sum += w;
+            }
+            if (sum == 0) throw new IllegalArgumentException("The mix must include at least one operation.");
+            this.seconds = seconds;
+            this.accounts = accounts;
+            this.hotAccounts = hotAccounts;
+            this.threads = threads;
+            this.rate = rate;
+            this.maxAmount = maxAmount;
+            this.weights = weights;
+        }
+
+        static Config fromProperties(double seconds) {
+            return new Config(seconds,
+                    Integer.getInteger("bank.soak.accounts", 10_000),
+                    Integer.getInteger("bank.soak.hot", 4),
+                    Integer.getInteger("bank.soak.threads", 32),
+                    Double.parseDouble(System.getProperty("bank.soak.rate", "10000")),
+                    Money.parseCents(System.getProperty("bank.soak.amount", "100.00")),
+                    parseMix(System.getProperty("bank.soak.mix", "deposit:40,withdraw:40,transfer:10,hot:10")));
+        }
+
+        /** Weights from text such as {@code deposit:40,hot:10}; operations left out get 0. */
+        static int[] parseMix(String text) {
+            int[] weights = new int[OPS.length];
+            for (String part : text.split(",")) {
+                String[] kv = part.trim().split(":");
+                Op op = null;
+                for (Op o : OPS) if (o.label.equals(kv[0].trim())) op = o;
+                if (op == null || kv.length != 2)
+                    throw new IllegalArgumentException("Mix entries look like deposit:40, not \"" + part.trim() + "\".");
+                try {
+                    weights[op.ordinal()] = Integer.parseInt(kv[1].trim());
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Mix weight for " + op.label + " must be a whole number.");
+                }
+            }
+            return weights;
+        }
+    }
+
+    private final Config config;
+    private final Ledger ledger;
+    private final BankAccount[] accs;
+    /** Net change of each account from the operations that succeeded on it. */
+    private final AtomicLongArray moved;
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+    private final LongAdder[] refused = new LongAdder[OPS.length];
+    private final LongAdder failures = new LongAdder();
+    private final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+    private final int weightSum;
+
+    private LoadGenerator(Config config, Ledger ledger, BankAccount[] accs) {
+        this.config = config;
+        this.ledger = ledger;
+        this.accs = accs;
+        moved = new AtomicLongArray(accs.length);
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i] = new LatencyHistogram();
+            refused[i] = new LongAdder();
+        }
+        int sum = 0;
+        for (int w : config.weights) sum += w;
+        weightSum = sum;
+    }
+
+    /** Runs the soak test described by the {@code bank.soak.*} properties and prints its report. */
+    static boolean run(String[] args, long checkpointMinutes) {
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+        Config config = Config.fromProperties(seconds);
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("bank-soak");
+        } catch (IOException ex) {
+            System.err.println("Could not create a data directory: " + ex.getMessage());
+            return false;
+        }
+        boolean[] journaled = {true};
+        Bank.Problems problems = new Bank.Problems() {
+            @Override
+            public void checkpointUnreadable(IOException cause) {
+                System.err.println("Could not read the checkpoint: " + cause);
+            }
+
+            @Override
+            public void journalUnavailable(Exception cause) {
+                System.err.println("Could not open the journal, running in memory: " + cause);
+                journaled[0] = false;
+            }
+        };
+        try {
+            Bank bank = Bank.open(dir, checkpointMinutes, problems);
+            LoadGenerator load;
+            try {
+                System.out.printf("Soak test: %,d accounts + %d hot, %d threads, %s, %.0f s, store %s, data in %s%n",
+                        config.accounts, config.hotAccounts, config.threads,
+                        config.rate > 0 ? String.format("%,.0f ops/sec", config.rate) : "no rate limit",
+                        config.seconds, bank.store() instanceof CompactAccountStore ? "compact" : "objects", dir);
+                load = new LoadGenerator(config, bank.ledger(), createAccounts(bank.ledger(), config));
+                load.drive();
+            } catch (RuntimeException ex) {
+                bank.close();
+                throw ex;
+            }
+            return load.check(bank, dir, checkpointMinutes, problems, journaled[0]);
+        } finally {
+            if (Boolean.getBoolean("bank.soak.keep")) System.out.println("Data kept in " + dir);
+            else delete(dir);
+        }
+    }
+
+    private static BankAccount[] createAccounts(Ledger ledger, Config config) {
+        long start = System.nanoTime();
+        BankAccount[] accs = new BankAccount[config.accounts + config.hotAccounts];
+        for (int from = 0; from < accs.length; from += CREATE_BATCH) {
+            int to = Math.min(from + CREATE_BATCH, accs.length);
+            Ledger.Batch batch = ledger.batch();
+            for (int i = from; i < to; i++) batch.open(accNo(config, i), "Soak " + i, initialBalance(config, i));
+            batch.commit();
+        }
+        AccountStore store = ledger.store();
+        for (int i = 0; i < accs.length; i++) accs[i] = store.get(accNo(config, i));
+        System.out.printf("Created %,d accounts in %.1f s%n", accs.length, (System.nanoTime() - start) / 1e9);
+        return accs;
+    }
+
+    private static String accNo(Config config, int i) {
+        return i < config.accounts ? String.format("S%08d", i) : "HOT" + (i - config.accounts);
+    }
+
+    private static long initialBalance(Config config, int i) {
+        return i < config.accounts ? INITIAL_BALANCE : HOT_BALANCE;
+    }
+
+    private void drive() {
+        long start = System.nanoTime();
+        long end = start + (long) (config.seconds * 1e9);
+        Thread[] workers = new Thread[config.threads];
+        for (int t = 0; t < workers.length; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> work(worker, start, end), "soak-" + t);
+            workers[t].start();
+        }
+        LatencyHistogram.Counts last = all();
+        long lastAt = start;
+        long lastRefused = 0;
+        try {
+            for (long next = start + PROGRESS_NANOS; next < end; next += PROGRESS_NANOS) {
+                Thread.sleep(Math.max(0, (next - System.nanoTime()) / 1_000_000));
+                long now = System.nanoTime();
+                LatencyHistogram.Counts counts = all();
+                LatencyHistogram.Counts window = counts.since(last);
+                long refusedNow = refusedTotal();
+                System.out.printf("%6.0f s %,14.0f ops/sec   p99 %8s ms   max %8s ms   %,d refused%n",
+                        (now - start) / 1e9, window.count() * 1e9 / (now - lastAt),
+                        Metrics.millis(window.percentile(99)), Metrics.millis(window.max()), refusedNow - lastRefused);
+                last = counts;
+                lastAt = now;
+                lastRefused = refusedNow;
+            }
+            for (Thread w : workers) w.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Soak test interrupted.", ex);
+        }
+        report((System.nanoTime() - start) / 1e9);
+    }
+
+    private void work(int worker, long start, long end) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long interval = config.rate > 0 ? (long) (config.threads * 1e9 / config.rate) : 0;
+        // Workers are spread over one interval so they do not all fire at once.
+        long due = start + interval * worker / config.threads;
+        while (true) {
+            long now = System.nanoTime();
+            if (interval == 0) due = now;
+            while (now < due) {
+                LockSupport.parkNanos(due - now);
+                now = System.nanoTime();
+            }
+            if (due >= end) return;
+            Op op = pick(rnd);
+            try {
+                apply(op, rnd);
+                latency[op.ordinal()].record(System.nanoTime() - due);
+            } catch (IllegalArgumentException refusal) {
+                refused[op.ordinal()].increment();
+            } catch (RuntimeException ex) {
+                failures.increment();
+                firstFailure.compareAndSet(null, ex);
+            }
+            due += interval;
+        }
+    }
+
+    private Op pick(ThreadLocalRandom rnd) {
+        int r = rnd.nextInt(weightSum);
+        for (Op op : OPS) {
+            r -= config.weights[op.ordinal()];
+            if (r < 0) return op;
+        }
+        throw new AssertionError();
+    }
+
+    private void apply(Op op, ThreadLocalRandom rnd) {
+        long amount = 1 + rnd.nextLong(config.maxAmount);
+        int i = rnd.nextInt(config.accounts);
+        switch (op) {
+            case DEPOSIT:
+                ledger.deposit(accs[i], amount);
+                moved.addAndGet(i, amount);
+                break;
+            case WITHDRAW:
+                ledger.withdraw(accs[i], amount);
+                moved.addAndGet(i, -amount);
+                break;
+            case TRANSFER:
+                int j = rnd.nextInt(config.accounts - 1);
+                if (j >= i) j++;
+                ledger.transfer(accs[i], accs[j], amount);
+                moved.addAndGet(i, -amount);
+                moved.addAndGet(j, amount);
+                break;
+            default:
+                int hot = config.accounts + rnd.nextInt(config.hotAccounts);
+                if (rnd.nextInt(5) < 3) {
+                    ledger.withdraw(accs[hot], amount);
+                    moved.addAndGet(hot, -amount);
+                } else {
+                    ledger.deposit(accs[hot], amount);
+                    moved.addAndGet(hot, amount);
+                }
+        }
+    }
+
+    private LatencyHistogram.Counts all() {
+        LatencyHistogram.Counts counts = latency[0].counts();
+        for (int i = 1; i < OPS.length; i++) counts = counts.plus(latency[i].counts());
+        return counts;
+    }
+
+    private long refusedTotal() {
+        long n = 0;
+        for (LongAdder r : refused) n += r.sum();
+        return n;
+    }
+
+    private void report(double elapsed) {
+        System.out.printf("%n%-10s %12s %10s %12s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "refused", "ops/sec", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Op op : OPS) row(op.label, latency[op.ordinal()].counts(), refused[op.ordinal()].sum(), elapsed);
+        row("all", all(), refusedTotal(), elapsed);
+    }
+
+    private static void row(String label, LatencyHistogram.Counts c, long refused, double elapsed) {
+        System.out.printf("%-10s %,12d %,10d %,12.0f %10s %10s %10s %10s %10s %10s%n",
+                label, c.count(), refused, c.count() / elapsed, Metrics.millis(c.mean()),
+                Metrics.millis(c.percentile(50)), Metrics.millis(c.percentile(90)), Metrics.millis(c.percentile(99)),
+                Metrics.millis(c.percentile(99.9)), Metrics.millis(c.max()));
+    }
+
+    /** Checks the invariants once the workers have stopped, closing the bank along the way. */
+    private boolean check(Bank bank, Path dir, long checkpointMinutes, Bank.Problems problems, boolean journaled) {
+        PesoFormatter peso = new PesoFormatter();
+        long[] balances = new long[accs.length];
+        long total = 0;
+        long opened = 0;
+        long mismatched = 0;
+        long negative = 0;
+        for (int i = 0; i < accs.length; i++) {
+            balances[i] = accs[i].getBalance();
+            total += balances[i];
+            opened += initialBalance(config, i);
+            if (balances[i] != initialBalance(config, i) + moved.get(i)) mismatched++;
+            if (balances[i] < 0) negative++;
+        }
+        long net = 0;
+        for (int i = 0; i < accs.length; i++) net += moved.get(i);
+
+        System.out.println();
+        boolean ok = verdict("no unexpected errors", failures.sum() == 0,
+                failures.sum() == 0 ? "" : failures.sum() + ", first: " + firstFailure.get());
+        ok &= verdict("every balance matches the operations on it", mismatched == 0,
+                mismatched == 0 ? "" : String.format("%,d accounts differ", mismatched));
+        ok &= verdict("no negative balance", negative == 0,
+                negative == 0 ? "" : String.format("%,d accounts", negative));
+        ok &= verdict("total = opening balances + net deposits", total == opened + net,
+                total == opened + net ? peso.format(total).toString()
+                        : peso.format(total) + ", expected " + new PesoFormatter().format(opened + net));
+        BalanceStats stats = ledger.stats();
+        // They are counted in the background after the bank opens.
+        for (long until = System.nanoTime() + 10_000_000_000L; !stats.isReady() && System.nanoTime() < until; )
+            LockSupport.parkNanos(1_000_000);
+        ok &= verdict("running stats agree", stats.isReady() && stats.total() == total && stats.accounts() == accs.length,
+                !stats.isReady() ? "still calculating" : stats.total() == total ? "" : "stats total " + peso.format(stats.total()));
+        long[] seen = new long[2];
+        try (Versions.View view = ledger.view()) {
+            view.forEachRow((accNo, name, balance) -> {
+                seen[0]++;
+                seen[1] += balance;
+            });
+        } catch (IOException ex) {
+            seen[0] = -1;
+        }
+        ok &= verdict("a point-in-time view agrees", seen[0] == accs.length && seen[1] == total,
+                String.format("%,d accounts", seen[0]));
+
+        bank.close();
+        if (!journaled) return verdict("reopened bank has the same balances", true, "skipped, no journal") && ok;
+        Bank reopened = Bank.open(dir, checkpointMinutes, problems);
+        long differ = 0;
+        try {
+            AccountStore store = reopened.store();
+            for (int i = 0; i < accs.length; i++) {
+                BankAccount acc = store.get(accs[i].getAccNo());
+                if (acc == null || acc.getBalance() != balances[i]) differ++;
+            }
+        } finally {
+            reopened.close();
+        }
+        return verdict("reopened bank has the same balances", differ == 0,
+                differ == 0 ? "" : String.format("%,d accounts differ", differ)) && ok;
+    }
+
+    private static boolean verdict(String invariant, boolean held, String detail) {
+        System.out.printf("%-6s %s%s%n", held ? "OK" : "FAILED", invariant, detail.isEmpty() ? "" : " (" + detail + ")");
+        return held;
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException ex) {
+                    System.err.println("Could not delete " + p + ": " + ex.getMessage());
+                }
+            });
+        } catch (IOException ex) {
+            System.err.println("Could not delete " + dir + ": " + ex.getMessage());
+        }
+    }
+}
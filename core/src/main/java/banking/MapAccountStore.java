@@ -0,0 +1,325 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The {@link AccountStore} that keeps one {@link BankAccount} per account in a
+ * hash map. Alongside the map it keeps a {@link SortedIndex}, so ordered views
+ * read positions from the index instead of sorting.
+ *
+ * <p>A store can start from a {@link Snapshot}. The checkpointed accounts stay in
+ * the mapped file and become {@link BankAccount} objects one at a time, the first
+ * time something looks them up or a view shows them. The index then only holds
+ * accounts created since, and positions are answered across both. Ids are
+ * name-index ids: the checkpoint's entries first, then the accounts created
+ * since.
+ */
+final class MapAccountStore extends AccountStore {
+    private final Map<String, BankAccount> accounts = new ConcurrentHashMap<>();
+    private final SortedIndex index = new SortedIndex();
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private Snapshot base;
+    private AtomicReferenceArray<BankAccount> baseAccounts;
+    private NameIndex names = new NameIndex(0, null);
+    /** Accounts created since the checkpoint, by name-index id minus the checkpoint size. */
+    private final List<BankAccount> addedById = new ArrayList<>();
+    private final Map<String, Integer> addedIds = new HashMap<>();
+
+    @Override
+    void attach(Snapshot snapshot) {
+        if (base != null || !accounts.isEmpty()) throw new IllegalStateException("Store is not empty.");
+        base = snapshot;
+        baseAccounts = new AtomicReferenceArray<>(snapshot.count());
+        names = new NameIndex(snapshot.count(), snapshot::name);
+    }
+
+    @Override
+    BankAccount get(String accNo) {
+        BankAccount acc = accounts.get(accNo);
+        if (acc != null || base == null) return acc;
+        int i = base.find(accNo);
+        return i < 0 ? null : baseAccount(i);
+    }
+
+    @Override
+    boolean contains(String accNo) {
+        return accounts.containsKey(accNo) || (base != null && base.find(accNo) >= 0);
+    }
+
+    @Override
+    int size() {
+        indexLock.readLock().lock();
+        try {
+            return baseCount() + index.size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    BankAccount accountAt(int pos) {
+        indexLock.readLock().lock();
+        try {
+            int at = locate(pos);
+            return at >= 0 ? baseAccount(at) : index.get(-at - 1);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /** Like {@link #accountAt} but without turning a checkpointed account into an object. */
+    @Override
+    String accNoAt(int pos) {
+        indexLock.readLock().lock();
+        try {
+            int at = locate(pos);
+            if (at < 0) return index.get(-at - 1).getAccNo();
+            BankAccount acc = baseAccounts.get(at);
+            return acc != null ? acc.getAccNo() : base.accNo(at);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    int[] prefixRange(String prefix) {
+        indexLock.readLock().lock();
+        try {
+            if (prefix.isEmpty()) return new int[]{0, size()};
+            return new int[]{insertionPoint(rankOf(prefix)), insertionPoint(rankOf(prefix + '\uffff'))};
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    int rankOf(String accNo) {
+        indexLock.readLock().lock();
+        try {
+            int added = index.rank(accNo);
+            if (base == null) return added;
+            int checkpointed = base.find(accNo);
+            if (checkpointed >= 0) return checkpointed + insertionPoint(added);
+            if (added >= 0) return added + insertionPoint(checkpointed);
+            return -(insertionPoint(added) + insertionPoint(checkpointed)) - 1;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void forEachInOrder(Consumer<BankAccount> action) {
+        indexLock.readLock().lock();
+        try {
+            merge(i -> action.accept(baseAccount(i)), action);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /** Like {@link #forEachInOrder} but without turning checkpointed accounts into objects. */
+    @Override
+    void forEachAccNoInOrder(Consumer<String> action) {
+        indexLock.readLock().lock();
+        try {
+            merge(i -> {
+                BankAccount acc = baseAccounts.get(i);
+                action.accept(acc != null ? acc.getAccNo() : base.accNo(i));
+            }, acc -> action.accept(acc.getAccNo()));
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void checkCreate(String accNo, String name) {
+        if (contains(accNo)) throw new IllegalArgumentException("Account number already exists.");
+    }
+
+    @Override
+    BankAccount create(String accNo, String name, long initialBalance, boolean notify) {
+        if (base != null && base.find(accNo) >= 0)
+            throw new IllegalArgumentException("Account number already exists.");
+        BankAccount acc = new BankAccount(accNo, name, initialBalance);
+        if (accounts.putIfAbsent(accNo, acc) != null)
+            throw new IllegalArgumentException("Account number already exists.");
+        indexLock.writeLock().lock();
+        try {
+            index.insert(acc);
+            addedIds.put(accNo, names.add(name));
+            addedById.add(acc);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        if (notify) fireAccountCreated(acc);
+        return acc;
+    }
+
+    @Override
+    int[] searchNames(String query, boolean prefix, int limit) {
+        return names.search(query, prefix, limit);
+    }
+
+    /** Indexes the checkpointed names now; otherwise the first search does it. */
+    @Override
+    void buildNameIndex() { names.build(); }
+
+    @Override
+    boolean isNameIndexBuilt() { return names.isBuilt(); }
+
+    @Override
+    int idCount() {
+        indexLock.readLock().lock();
+        try {
+            return baseCount() + addedById.size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    BankAccount accountById(int id) {
+        int checkpointed = baseCount();
+        if (id < checkpointed) return baseAccount(id);
+        indexLock.readLock().lock();
+        try {
+            return addedById.get(id - checkpointed);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    int idOf(String accNo) {
+        if (base != null) {
+            int i = base.find(accNo);
+            if (i >= 0) return i;
+        }
+        indexLock.readLock().lock();
+        try {
+            Integer id = addedIds.get(accNo);
+            return id == null ? -1 : id;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every account in {@code view} to a new checkpoint file. Only copying
+     * the list of accounts created since the last checkpoint takes the index lock;
+     * writers keep going while the balances are read back through the view.
+     */
+    @Override
+    void writeSnapshot(Path file, int journalId, long journalPosition, Versions.View view) throws IOException {
+        BankAccount[] added = Arrays.stream(addedInOrder()).filter(acc -> view.includes(acc.getAccNo()))
+                .toArray(BankAccount[]::new);
+        Snapshot.write(file, journalId, journalPosition, base, baseAccounts, added, view);
+    }
+
+    /**
+     * Visits every account in account-number order without holding the index
+     * lock and without turning checkpointed entries into objects, so a long walk
+     * neither blocks new accounts nor grows the heap. Like a checkpoint, it
+     * includes the accounts that existed when it started.
+     */
+    @Override
+    void forEachRow(RowVisitor visitor) throws IOException {
+        BankAccount[] added = addedInOrder();
+        int next = 0;
+        for (BankAccount acc : added) {
+            int upTo = base == null ? 0 : insertionPoint(base.find(acc.getAccNo()));
+            for (; next < upTo; next++) visitBase(next, visitor);
+            visitor.row(acc.getAccNo(), acc.getName(), acc.getBalance());
+        }
+        for (; next < baseCount(); next++) visitBase(next, visitor);
+    }
+
+    private void visitBase(int i, RowVisitor visitor) throws IOException {
+        BankAccount acc = baseAccounts.get(i);
+        if (acc != null) visitor.row(acc.getAccNo(), acc.getName(), acc.getBalance());
+        else visitor.row(base.accNo(i), base.name(i), base.balance(i));
+    }
+
+    /** Copy of the accounts created since the checkpoint, in account-number order. */
+    private BankAccount[] addedInOrder() {
+        indexLock.readLock().lock();
+        try {
+            BankAccount[] added = new BankAccount[index.size()];
+            int[] n = {0};
+            index.forEach(acc -> added[n[0]++] = acc);
+            return added;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private int baseCount() { return base == null ? 0 : base.count(); }
+
+    /**
+     * Where position {@code pos} lives: a checkpoint entry {@code i >= 0}, or
+     * {@code -(index position) - 1} for an account created since. Needs the index lock.
+     */
+    private int locate(int pos) {
+        if (index.size() == 0) {
+            if (pos < 0 || pos >= baseCount()) throw new IndexOutOfBoundsException("Position " + pos);
+            return pos;
+        }
+        if (base == null) return -pos - 1;
+
+        // Find the last checkpointed account at or before pos; each one sits
+        // behind its own index plus the number of newer accounts sorting before it.
+        int lo = 0;
+        int hi = base.count() - 1;
+        int before = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = mid + insertionPoint(index.rank(base.accNo(mid)));
+            if (at == pos) return mid;
+            if (at < pos) {
+                before = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -(pos - (before + 1)) - 1;
+    }
+
+    /** Walks checkpointed positions and newer accounts in one merged account-number order. */
+    private void merge(IntConsumer checkpointed, Consumer<BankAccount> added) {
+        if (base == null) {
+            index.forEach(added);
+            return;
+        }
+        int[] next = {0};
+        index.forEach(acc -> {
+            int upTo = insertionPoint(base.find(acc.getAccNo()));
+            for (; next[0] < upTo; next[0]++) checkpointed.accept(next[0]);
+            added.accept(acc);
+        });
+        for (int i = next[0]; i < base.count(); i++) checkpointed.accept(i);
+    }
+
+    /** Turns a checkpointed entry into its one shared BankAccount on first use. */
+    private BankAccount baseAccount(int i) {
+        BankAccount acc = baseAccounts.get(i);
+        if (acc != null) return acc;
+        BankAccount fresh = new BankAccount(base.accNo(i), base.name(i), base.balance(i));
+        if (!baseAccounts.compareAndSet(i, null, fresh)) return baseAccounts.get(i);
+        accounts.put(fresh.getAccNo(), fresh);
+        return fresh;
+    }
+
+    /** Number of keys before an absent key, from a {@code -(insertion point) - 1} search result. */
+    private static int insertionPoint(int searchResult) {
+        return searchResult < 0 ? -(searchResult + 1) : searchResult;
+    }
+}
@@ -0,0 +1,95 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counters for each kind of work the app does.
+ * Recording is lock-free and cheap enough to leave on all the time. Readers
+ * take {@link LatencyHistogram.Counts} copies; subtracting an older copy gives
+ * the rates and percentiles for just the time in between.
+ */
+final class Metrics {
+    enum Kind {
+        /** Account opened, from submit to durable. */
+        CREATE("create"),
+        /** Deposit, from submit to durable. */
+        DEPOSIT("deposit"),
+        /** Withdrawal, from submit to durable. */
+        WITHDRAW("withdraw"),
+        /** Reload of the accounts table and selector. */
+        REFRESH("refresh"),
+        /** One paint of the accounts table. */
+        RENDER("render"),
+        /** How long the Event Dispatch Thread was blocked, recorded only above the stall threshold. */
+        EDT_STALL("edt stall");
+
+        final String label;
+
+        Kind(String label) { this.label = label; }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[KINDS.length];
+    private final LongAdder[] errors = new LongAdder[KINDS.length];
+    private final long started = System.nanoTime();
+
+    Metrics() {
+        for (int i = 0; i < KINDS.length; i++) {
+            latency[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    void record(Kind kind, long nanos) { latency[kind.ordinal()].record(nanos); }
+
+    void recordSince(Kind kind, long startNanos) { record(kind, System.nanoTime() - startNanos); }
+
+    /** Counts a failure. Failures are not timed, so they never skew the percentiles. */
+    void error(Kind kind) { errors[kind.ordinal()].increment(); }
+
+    LatencyHistogram.Counts counts(Kind kind) { return latency[kind.ordinal()].counts(); }
+
+    long errors(Kind kind) { return errors[kind.ordinal()].sum(); }
+
+    /** The three transaction kinds together, which is what ops/sec counts. */
+    LatencyHistogram.Counts transactions() {
+        return counts(Kind.CREATE).plus(counts(Kind.DEPOSIT)).plus(counts(Kind.WITHDRAW));
+    }
+
+    /** Plain-text table of every kind since startup. */
+    String report() {
+        long uptime = System.nanoTime() - started;
+        LatencyHistogram.Counts txns = transactions();
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("Simple Banking metrics, ")
+                .append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append('\n')
+                .append(String.format("Uptime %.1f s, %,d transactions, %.1f ops/sec%n%n",
+                        uptime / 1e9, txns.count(), txns.count() * 1e9 / uptime))
+                .append(String.format("%-10s %12s %8s %10s %10s %10s %10s %10s %10s%n",
+                        "kind", "count", "errors", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Kind kind : KINDS) {
+            LatencyHistogram.Counts c = counts(kind);
+            sb.append(String.format("%-10s %,12d %,8d %10s %10s %10s %10s %10s %10s%n",
+                    kind.label, c.count(), errors(kind), millis(c.mean()), millis(c.percentile(50)),
+                    millis(c.percentile(90)), millis(c.percentile(99)), millis(c.percentile(99.9)),
+                    millis(c.max())));
+        }
+        return sb.toString();
+    }
+
+    void writeTo(Path file) throws IOException {
+        Files.writeString(file, report(), StandardCharsets.UTF_8);
+    }
+
+    /** Milliseconds with two decimals, or three below one millisecond. */
+    static String millis(long nanos) {
+        return nanos < 1_000_000 ? String.format("%.3f", nanos / 1e6) : String.format("%.2f", nanos / 1e6);
+    }
+}
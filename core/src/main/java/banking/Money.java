@@ -0,0 +1,77 @@
+package banking;
+
+/**
+ * Peso amounts are kept as a primitive {@code long} count of centavos, so sums are
+ * exact and nothing is boxed on the transaction path.
+ */
+final class Money {
+    private Money() {}
+
+    /**
+     * Parses an amount such as {@code " 1,250.5 "} straight into centavos without
+     * allocating. Surrounding whitespace and commas between thousands are
+     * accepted; misplaced commas, more than two decimal places, exponents and
+     * anything that does not fit in a {@code long} are rejected.
+     */
+    static long parseCents(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start == end) throw new NumberFormatException("Empty amount.");
+
+        boolean negative = false;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long cents = 0;
+        int decimals = -1;
+        boolean digits = false;
+        // Digits since the last comma, and whether there was one.
+        int group = 0;
+        boolean grouped = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimals == 2) throw new NumberFormatException("At most two decimal places.");
+                if (decimals >= 0) decimals++;
+                else group++;
+                cents = appendDigit(cents, c - '0');
+                digits = true;
+            } else if (c == '.' && decimals < 0) {
+                checkGroup(text, grouped, group);
+                decimals = 0;
+            } else if (c == ',' && decimals < 0 && group >= 1 && group <= 3 && (!grouped || group == 3)) {
+                grouped = true;
+                group = 0;
+            } else {
+                throw new NumberFormatException("Not an amount: " + text);
+            }
+        }
+        if (!digits) throw new NumberFormatException("Not an amount: " + text);
+        if (decimals < 0) checkGroup(text, grouped, group);
+
+        for (int d = Math.max(decimals, 0); d < 2; d++) cents = appendDigit(cents, 0);
+        return negative ? -cents : cents;
+    }
+
+    /** After a comma, the whole part must end in a full group of three digits. */
+    private static void checkGroup(CharSequence text, boolean grouped, int group) {
+        if (grouped && group != 3) throw new NumberFormatException("Not an amount: " + text);
+    }
+
+    private static long appendDigit(long value, int digit) {
+        if (value > (Long.MAX_VALUE - digit) / 10) throw new NumberFormatException("Amount is too large.");
+        return value * 10 + digit;
+    }
+
+    private static final ThreadLocal<PesoFormatter> FORMATTER = ThreadLocal.withInitial(PesoFormatter::new);
+
+    /** Formats for a label or message; hot paths should hold their own {@link PesoFormatter}. */
+    static String format(long cents) {
+        return FORMATTER.get().format(cents).toString();
+    }
+}
@@ -0,0 +1,188 @@
+package banking;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+/**
+ * Case-insensitive substring index over account names. Every name is lowercased
+ * into a shared char array and each of its trigrams gets a posting list of name
+ * ids. A query of three or more characters only checks the names in its rarest
+ * trigram's list; shorter queries scan the char array. Names start with a marker
+ * character, so a prefix query is just a substring query that begins with it.
+ *
+ * <p>Ids {@code [0, checkpointed)} are the checkpoint entries, indexed later by
+ * {@link #build()} so startup does not wait for them; accounts created since get
+ * the ids after those, in creation order. Posting lists are therefore sorted
+ * and results come back in id order.
+ */
+final class NameIndex {
+    private static final char START = '\u0001';
+    private static final int[] NONE = {};
+
+    /** Name ids of one trigram, in increasing order. */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    /** Lowercased names one after another, with the offset where each starts. */
+    private static final class Names {
+        char[] text = new char[1 << 12];
+        int length;
+        int[] starts = new int[64];
+        int count;
+
+        void add(String name) {
+            int need = length + name.length() + 1;
+            if (need > text.length) text = Arrays.copyOf(text, Math.max(need, text.length * 2));
+            text[length++] = START;
+            for (int i = 0; i < name.length(); i++) text[length++] = Character.toLowerCase(name.charAt(i));
+            if (count + 2 > starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+            starts[++count] = length;
+        }
+
+        boolean contains(int i, char[] q) {
+            int end = starts[i + 1] - q.length;
+            outer:
+            for (int at = starts[i]; at <= end; at++) {
+                for (int k = 0; k < q.length; k++) {
+                    if (text[at + k] != q[k]) continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /** Adds the trigrams of name {@code i} under {@code id}. */
+        void index(int i, int id, Map<Long, Postings> grams) {
+            for (int at = starts[i]; at + 3 <= starts[i + 1]; at++)
+                grams.computeIfAbsent(key(text, at), k -> new Postings()).add(id);
+        }
+    }
+
+    private final int checkpointed;
+    private final IntFunction<String> checkpointName;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final Names added = new Names();
+    private Names base;
+
+    /** {@code checkpointName} reads the names of ids below {@code checkpointed}. */
+    NameIndex(int checkpointed, IntFunction<String> checkpointName) {
+        this.checkpointed = checkpointed;
+        this.checkpointName = checkpointName;
+        if (checkpointed == 0) base = new Names();
+    }
+
+    /** Indexes a new name and returns its id. */
+    int add(String name) {
+        lock.writeLock().lock();
+        try {
+            int id = checkpointed + added.count;
+            added.add(name);
+            added.index(added.count - 1, id, grams);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean isBuilt() {
+        lock.readLock().lock();
+        try {
+            return base != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the checkpoint names. The work happens without the lock; only
+     * joining the result to the lists of newer names blocks {@link #add}.
+     */
+    void build() {
+        if (isBuilt()) return;
+        Names names = new Names();
+        Map<Long, Postings> baseGrams = new HashMap<>();
+        for (int i = 0; i < checkpointed; i++) {
+            names.add(checkpointName.apply(i));
+            names.index(i, i, baseGrams);
+        }
+        lock.writeLock().lock();
+        try {
+            if (base != null) return;
+            for (Map.Entry<Long, Postings> e : baseGrams.entrySet()) {
+                Postings newer = grams.get(e.getKey());
+                Postings all = e.getValue();
+                if (newer != null) {
+                    all.ids = Arrays.copyOf(all.ids, all.size + newer.size);
+                    System.arraycopy(newer.ids, 0, all.ids, all.size, newer.size);
+                    all.size += newer.size;
+                }
+                grams.put(e.getKey(), all);
+            }
+            base = names;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} names containing {@code query}, or starting with
+     * it if {@code prefix} is set, ignoring case. Builds the checkpoint part
+     * first if that has not happened yet.
+     */
+    int[] search(String query, boolean prefix, int limit) {
+        build();
+        char[] q = new char[query.length() + (prefix ? 1 : 0)];
+        int n = 0;
+        if (prefix) q[n++] = START;
+        for (int i = 0; i < query.length(); i++) q[n++] = Character.toLowerCase(query.charAt(i));
+
+        lock.readLock().lock();
+        try {
+            int[] out = new int[Math.min(limit, 64)];
+            int found = 0;
+            if (q.length < 3) {
+                int total = checkpointed + added.count;
+                for (int id = 0; id < total && found < limit; id++) {
+                    if (!matches(id, q)) continue;
+                    if (found == out.length) out = Arrays.copyOf(out, Math.min(limit, found * 2));
+                    out[found++] = id;
+                }
+            } else {
+                Postings rarest = null;
+                for (int at = 0; at + 3 <= q.length; at++) {
+                    Postings p = grams.get(key(q, at));
+                    if (p == null) return NONE;
+                    if (rarest == null || p.size < rarest.size) rarest = p;
+                }
+                for (int i = 0; i < rarest.size && found < limit; i++) {
+                    int id = rarest.ids[i];
+                    if (!matches(id, q)) continue;
+                    if (found == out.length) out = Arrays.copyOf(out, Math.min(limit, found * 2));
+                    out[found++] = id;
+                }
+            }
+            return Arrays.copyOf(out, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matches(int id, char[] q) {
+        return id < checkpointed ? base.contains(id, q) : added.contains(id - checkpointed, q);
+    }
+
+    private static long key(char[] s, int at) {
+        return (long) s[at] << 32 | (long) s[at + 1] << 16 | s[at + 2];
+    }
+}
@@ -0,0 +1,50 @@
+package banking;
+
+/**
+ * Writes grouped peso amounts such as {@code ₱1,234,567.89} into a reusable char
+ * buffer, replacing {@code String.format("₱%,.2f", ...)} and its per-call
+ * Formatter and regex setup. Formatting itself allocates nothing; the result
+ * is read back through {@link #chars()}, {@link #offset()} and {@link #length()}
+ * or appended to a StringBuilder. Not thread-safe: use one instance per thread
+ * or per component.
+ */
+final class PesoFormatter {
+    // sign + peso sign + 19 digits + 6 separators + decimal point + 2 decimals
+    private final char[] buf = new char[32];
+    private int start = buf.length;
+
+    PesoFormatter format(long cents) {
+        int pos = buf.length;
+        boolean negative = cents < 0;
+        // Work on the non-positive value so Long.MIN_VALUE needs no special case.
+        long v = negative ? cents : -cents;
+        int fraction = (int) -(v % 100);
+        v /= 100;
+        buf[--pos] = (char) ('0' + fraction % 10);
+        buf[--pos] = (char) ('0' + fraction / 10);
+        buf[--pos] = '.';
+        int inGroup = 0;
+        do {
+            if (inGroup == 3) {
+                buf[--pos] = ',';
+                inGroup = 0;
+            }
+            buf[--pos] = (char) ('0' - v % 10);
+            v /= 10;
+            inGroup++;
+        } while (v != 0);
+        buf[--pos] = '₱';
+        if (negative) buf[--pos] = '-';
+        start = pos;
+        return this;
+    }
+
+    char[] chars() { return buf; }
+    int offset() { return start; }
+    int length() { return buf.length - start; }
+
+    StringBuilder appendTo(StringBuilder sb) { return sb.append(buf, start, buf.length - start); }
+
+    @Override
+    public String toString() { return new String(buf, start, buf.length - start); }
+}
@@ -0,0 +1,347 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only checkpoint of the account store, memory-mapped straight from disk.
+ *
+ * <p>The file is columnar: a 48-byte header (magic, version, count, journal id and
+ * position, creation time, text column sizes) followed by the account-number
+ * offsets ({@code int[count + 1]}), the name offsets ({@code int[count + 1]}), the
+ * balances ({@code long[count]}) and then the UTF-8 account-number and name bytes.
+ * Entries are sorted by account number, so row {@code i} of the table is entry
+ * {@code i} and lookups are a binary search over the mapped bytes. Opening one
+ * reads only the header; every column is paged in by the OS on first touch.
+ */
+final class Snapshot {
+    private static final long MAGIC = 0x5342534e41500000L; // "SBSNAP"
+    private static final int VERSION = 1;
+    private static final int HEADER = 48;
+
+    private final int count;
+    private final int journalId;
+    private final long journalPosition;
+    private final MappedByteBuffer accNoOffsets;
+    private final MappedByteBuffer nameOffsets;
+    private final MappedByteBuffer balances;
+    private final MappedByteBuffer accNos;
+    private final MappedByteBuffer names;
+
+    private Snapshot(FileChannel ch, ByteBuffer header) throws IOException {
+        count = header.getInt(12);
+        journalId = header.getInt(16);
+        journalPosition = header.getLong(24);
+        int accNoBytes = header.getInt(40);
+        int nameBytes = header.getInt(44);
+
+        long p = HEADER;
+        accNoOffsets = ch.map(FileChannel.MapMode.READ_ONLY, p, 4L * (count + 1));
+        p += 4L * (count + 1);
+        nameOffsets = ch.map(FileChannel.MapMode.READ_ONLY, p, 4L * (count + 1));
+        p += 4L * (count + 1);
+        balances = ch.map(FileChannel.MapMode.READ_ONLY, p, 8L * count);
+        p += 8L * count;
+        accNos = ch.map(FileChannel.MapMode.READ_ONLY, p, accNoBytes);
+        p += accNoBytes;
+        names = ch.map(FileChannel.MapMode.READ_ONLY, p, nameBytes);
+        p += nameBytes;
+        if (p != ch.size()) throw new IOException("Snapshot size does not match its header.");
+    }
+
+    static Snapshot open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) throw new IOException("Snapshot header is truncated.");
+            }
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION)
+                throw new IOException("Not a ledger snapshot: " + file);
+            return new Snapshot(ch, header);
+        }
+    }
+
+    int count() { return count; }
+
+    /** Id of the journal this checkpoint belongs to. */
+    int journalId() { return journalId; }
+
+    /** Journal position whose earlier records are all reflected in this checkpoint. */
+    long journalPosition() { return journalPosition; }
+
+    String accNo(int i) { return text(accNoOffsets, accNos, i); }
+    String name(int i) { return text(nameOffsets, names, i); }
+    long balance(int i) { return balances.getLong(8 * i); }
+
+    /** Index of the account number, or {@code -(insertion point) - 1}. */
+    int find(String accNo) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, accNo);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /** Compares entry {@code i} with {@code key} like String.compareTo, without decoding ASCII keys. */
+    private int compare(int i, String key) {
+        int p = accNoOffsets.getInt(4 * i);
+        int end = accNoOffsets.getInt(4 * i + 4);
+        int n = key.length();
+        for (int c = 0; p < end && c < n; p++, c++) {
+            byte b = accNos.get(p);
+            if (b < 0) return accNo(i).compareTo(key);
+            int d = b - key.charAt(c);
+            if (d != 0) return d;
+        }
+        if (p < end) return 1;
+        return end - accNoOffsets.getInt(4 * i) < n ? -1 : 0;
+    }
+
+    private static String text(ByteBuffer offsets, ByteBuffer bytes, int i) {
+        int start = offsets.getInt(4 * i);
+        byte[] b = new byte[offsets.getInt(4 * i + 4) - start];
+        bytes.get(start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Entries for {@link #write(Path, int, long, int, Rows)}, by position
+     * {@code k} in account-number order. Column 0 is the account number and
+     * column 1 the name, as UTF-8.
+     */
+    interface Rows {
+        int textLength(int column, int k);
+
+        void putText(int column, int k, ByteBuffer out);
+
+        long balance(int k);
+    }
+
+    /**
+     * Writes a checkpoint that merges {@code previous} (with any balances changed
+     * through its materialized accounts) and the accounts created since, with the
+     * balances as of {@code view}, as a new generation of {@code file}.
+     */
+    static void write(Path file, int journalId, long journalPosition, Snapshot previous,
+                      AtomicReferenceArray<BankAccount> materialized, BankAccount[] added,
+                      Versions.View view) throws IOException {
+        int baseCount = previous == null ? 0 : previous.count;
+        int count = baseCount + added.length;
+
+        // order[k] >= 0 is a checkpointed entry, ~j is added[j].
+        int[] order = new int[count];
+        byte[][] addedAccNos = new byte[added.length][];
+        byte[][] addedNames = new byte[added.length][];
+        int k = 0;
+        int next = 0;
+        for (int j = 0; j < added.length; j++) {
+            int upTo = previous == null ? 0 : -(previous.find(added[j].getAccNo()) + 1);
+            while (next < upTo) order[k++] = next++;
+            order[k++] = ~j;
+            addedAccNos[j] = added[j].getAccNo().getBytes(StandardCharsets.UTF_8);
+            addedNames[j] = added[j].getName().getBytes(StandardCharsets.UTF_8);
+        }
+        while (next < baseCount) order[k++] = next++;
+
+        write(file, journalId, journalPosition, count, new Rows() {
+            @Override
+            public int textLength(int column, int k) {
+                int e = order[k];
+                if (e >= 0) return previous.textLength(column == 0 ? previous.accNoOffsets : previous.nameOffsets, e);
+                return (column == 0 ? addedAccNos : addedNames)[~e].length;
+            }
+
+            @Override
+            public void putText(int column, int k, ByteBuffer out) {
+                int e = order[k];
+                if (e < 0) {
+                    out.put((column == 0 ? addedAccNos : addedNames)[~e]);
+                    return;
+                }
+                ByteBuffer offsets = column == 0 ? previous.accNoOffsets : previous.nameOffsets;
+                ByteBuffer bytes = column == 0 ? previous.accNos : previous.names;
+                int start = offsets.getInt(4 * e);
+                int len = offsets.getInt(4 * e + 4) - start;
+                out.put(out.position(), bytes, start, len);
+                out.position(out.position() + len);
+            }
+
+            @Override
+            public long balance(int k) {
+                int e = order[k];
+                BankAccount acc = e >= 0 ? materialized.get(e) : added[~e];
+                return acc != null ? view.balanceOf(acc) : previous.balance(e);
+            }
+        });
+    }
+
+    /** Writes {@code count} entries from {@code rows} as a checkpoint, a new generation of {@code file}. */
+    static void write(Path file, int journalId, long journalPosition, int count, Rows rows) throws IOException {
+        long accNoBytes = 0;
+        long nameBytes = 0;
+        for (int k = 0; k < count; k++) {
+            accNoBytes += rows.textLength(0, k);
+            nameBytes += rows.textLength(1, k);
+        }
+        if (accNoBytes > Integer.MAX_VALUE || nameBytes > Integer.MAX_VALUE)
+            throw new IOException("Snapshot text column is larger than 2 GiB.");
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+            out.putLong(MAGIC).putInt(VERSION).putInt(count).putInt(journalId).putInt(0)
+                    .putLong(journalPosition).putLong(System.currentTimeMillis())
+                    .putInt((int) accNoBytes).putInt((int) nameBytes);
+
+            for (int column = 0; column < 2; column++) {
+                int offset = 0;
+                out = ensure(ch, out, 4);
+                out.putInt(0);
+                for (int k = 0; k < count; k++) {
+                    offset += rows.textLength(column, k);
+                    out = ensure(ch, out, 4);
+                    out.putInt(offset);
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                out = ensure(ch, out, 8);
+                out.putLong(rows.balance(k));
+            }
+            for (int column = 0; column < 2; column++) {
+                for (int k = 0; k < count; k++) {
+                    out = ensure(ch, out, rows.textLength(column, k));
+                    rows.putText(column, k, out);
+                }
+            }
+            drain(ch, out);
+            ch.force(true);
+        }
+        publish(tmp, file);
+    }
+
+    /** Moves a fully written {@code tmp} over {@code file}, in one step where the file system allows. */
+    static void replace(Path tmp, Path file) throws IOException {
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Generation {@code n} of {@code file}, {@code file.n}. Checkpoints, history
+     * files and journal segments are each written as a new generation rather
+     * than over the last one, which may still be mapped, and Windows refuses to
+     * replace or delete a mapped file.
+     */
+    static Path generation(Path file, long n) {
+        return file.resolveSibling(file.getFileName() + "." + n);
+    }
+
+    /**
+     * The newest generation of {@code file}, or {@code file} itself as written
+     * before generations were numbered. Null if there is neither.
+     */
+    static Path latest(Path file) throws IOException {
+        Path newest = Files.exists(file) ? file : null;
+        long newestN = -1;
+        for (Path p : generations(file)) {
+            long n = generationOf(file, p);
+            if (n > newestN) {
+                newest = p;
+                newestN = n;
+            }
+        }
+        return newest;
+    }
+
+    /** Moves a fully written {@code tmp} to a new generation of {@code file}, deletes the older ones and returns it. */
+    static Path publish(Path tmp, Path file) throws IOException {
+        Path newest = latest(file);
+        Path next = generation(file, newest == null ? 0 : generationOf(file, newest) + 1);
+        replace(tmp, next);
+        deleteOthers(file, next);
+        return next;
+    }
+
+    /**
+     * Deletes every generation of {@code file} but {@code keep}, which may be
+     * null. One that cannot be deleted yet, such as a file still mapped on
+     * Windows, is left for a later call.
+     */
+    static void deleteOthers(Path file, Path keep) throws IOException {
+        List<Path> others = generations(file);
+        others.add(file);
+        for (Path p : others) {
+            if (p.equals(keep)) continue;
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException stillInUse) {
+                // Gone on a later checkpoint or roll, once nothing maps it.
+            }
+        }
+    }
+
+    /** The numbered generations of {@code file} present on disk. */
+    private static List<Path> generations(Path file) throws IOException {
+        List<Path> found = new ArrayList<>();
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) return found;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path p : entries) {
+                if (generationOf(file, p) >= 0) found.add(file.resolveSibling(p.getFileName()));
+            }
+        }
+        return found;
+    }
+
+    /** The generation number of {@code p}, or -1 if it is not a numbered generation of {@code file}. */
+    private static long generationOf(Path file, Path p) {
+        String prefix = file.getFileName() + ".";
+        String name = p.getFileName().toString();
+        if (!name.startsWith(prefix) || name.length() == prefix.length()) return -1;
+        long n = 0;
+        for (int i = prefix.length(); i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || n > (Long.MAX_VALUE - 9) / 10) return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    private int textLength(ByteBuffer offsets, int i) {
+        return offsets.getInt(4 * i + 4) - offsets.getInt(4 * i);
+    }
+
+    /** Makes room for {@code bytes} more bytes, flushing or growing the buffer as needed. */
+    static ByteBuffer ensure(FileChannel ch, ByteBuffer out, int bytes) throws IOException {
+        if (out.remaining() >= bytes) return out;
+        drain(ch, out);
+        if (out.capacity() >= bytes) return out;
+        return ByteBuffer.allocateDirect(bytes);
+    }
+
+    static void drain(FileChannel ch, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) ch.write(out);
+        out.clear();
+    }
+}
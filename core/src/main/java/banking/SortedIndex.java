@@ -0,0 +1,124 @@
+package banking;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Order-statistic AVL tree keyed by account number. Every node tracks the size of
+ * its subtree, so both rank (accNo to position) and select (position to account)
+ * run in O(log n) and nobody has to sort the accounts again.
+ */
+final class SortedIndex {
+    private static final class Node {
+        final BankAccount acc;
+        Node left, right;
+        int height = 1;
+        int size = 1;
+
+        Node(BankAccount acc) { this.acc = acc; }
+    }
+
+    private Node root;
+
+    int size() { return size(root); }
+
+    void insert(BankAccount acc) { root = insert(root, acc); }
+
+    /** Account at the given sorted position. */
+    BankAccount get(int pos) {
+        if (pos < 0 || pos >= size()) throw new IndexOutOfBoundsException("Position " + pos + ", size " + size());
+        Node n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (pos < leftSize) {
+                n = n.left;
+            } else if (pos == leftSize) {
+                return n.acc;
+            } else {
+                pos -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /** Sorted position of the account number, or {@code -(insertion point) - 1} if absent. */
+    int rank(String accNo) {
+        Node n = root;
+        int before = 0;
+        while (n != null) {
+            int c = accNo.compareTo(n.acc.getAccNo());
+            if (c < 0) {
+                n = n.left;
+            } else if (c == 0) {
+                return before + size(n.left);
+            } else {
+                before += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return -(before + 1);
+    }
+
+    void forEach(Consumer<BankAccount> action) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node n = root;
+        while (n != null || !stack.isEmpty()) {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
+            }
+            n = stack.pop();
+            action.accept(n.acc);
+            n = n.right;
+        }
+    }
+
+    private static Node insert(Node n, BankAccount acc) {
+        if (n == null) return new Node(acc);
+        int c = acc.getAccNo().compareTo(n.acc.getAccNo());
+        if (c < 0) n.left = insert(n.left, acc);
+        else if (c > 0) n.right = insert(n.right, acc);
+        else throw new IllegalArgumentException("Duplicate account number: " + acc.getAccNo());
+        return balance(n);
+    }
+
+    private static Node balance(Node n) {
+        update(n);
+        int skew = height(n.left) - height(n.right);
+        if (skew > 1) {
+            if (height(n.left.left) < height(n.left.right)) n.left = rotateLeft(n.left);
+            return rotateRight(n);
+        }
+        if (skew < -1) {
+            if (height(n.right.right) < height(n.right.left)) n.right = rotateRight(n.right);
+            return rotateLeft(n);
+        }
+        return n;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private static void update(Node n) {
+        n.height = Math.max(height(n.left), height(n.right)) + 1;
+        n.size = size(n.left) + size(n.right) + 1;
+    }
+
+    private static int height(Node n) { return n == null ? 0 : n.height; }
+    private static int size(Node n) { return n == null ? 0 : n.size; }
+}
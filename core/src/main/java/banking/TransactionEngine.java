@@ -0,0 +1,254 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs ledger operations off the Event Dispatch Thread. Each worker owns a
+ * bounded queue, and an operation goes to the queue picked by its account
+ * number, so operations on one account run in the order they were submitted.
+ * A worker takes whatever is waiting (up to {@link #MAX_BATCH}), applies it as
+ * one {@link Ledger.Batch} so the whole batch shares a journal flush, and hands
+ * the finished batch on through a {@link Coalescer}. In the app that is the
+ * frame coalescer, so callbacks and the batch summary arrive on the EDT once per
+ * frame, not once per operation. Each operation's latency, from the moment it
+ * was queued until its batch was durable, goes into {@link Metrics}.
+ *
+ * <p>If a batch's journal flush fails, its operations have still been applied.
+ * They come back {@linkplain Op#unsaved unsaved} rather than failed, so nobody
+ * enters them again, and the ledger turns away everything queued after them.
+ */
+final class TransactionEngine implements Closeable {
+    private static final int MAX_BATCH = 512;
+    private static final int CAPACITY = 1 << 16;
+
+    /** One operation; the outcome fields are filled in by the worker that ran it. */
+    static final class Op {
+        enum Type { OPEN, DEPOSIT, WITHDRAW }
+
+        final Type type;
+        final String accNo;
+        final String name;
+        final long amount;
+        final Consumer<Op> onDone;
+        /** Why it was not applied, or null if it was. */
+        String error;
+        /**
+         * Set when it was applied but its batch could not be saved to the
+         * journal. The money has moved; submitting it again would move it twice.
+         */
+        boolean unsaved;
+        long balance;
+        /** {@link System#nanoTime()} when it was queued. */
+        long queuedAt;
+
+        private Op(Type type, String accNo, String name, long amount, Consumer<Op> onDone) {
+            this.type = type;
+            this.accNo = accNo;
+            this.name = name;
+            this.amount = amount;
+            this.onDone = onDone;
+        }
+
+        static Op open(String accNo, String name, long initialBalance, Consumer<Op> onDone) {
+            return new Op(Type.OPEN, accNo, name, initialBalance, onDone);
+        }
+
+        static Op deposit(String accNo, long amount, Consumer<Op> onDone) {
+            return new Op(Type.DEPOSIT, accNo, null, amount, onDone);
+        }
+
+        static Op withdraw(String accNo, long amount, Consumer<Op> onDone) {
+            return new Op(Type.WITHDRAW, accNo, null, amount, onDone);
+        }
+
+        /** Applied and saved. */
+        boolean ok() { return error == null && !unsaved; }
+    }
+
+    /** What finished since the last frame: the batches run, and their outcomes. */
+    static final class Summary {
+        int batches;
+        int applied;
+        int rejected;
+        /** Applied but not saved to the journal; see {@link Op#unsaved}. */
+        int unsaved;
+        long nanos;
+        String lastError;
+    }
+
+    private static final class Done {
+        final List<Op> ops;
+        final long nanos;
+
+        Done(List<Op> ops, long nanos) {
+            this.ops = ops;
+            this.nanos = nanos;
+        }
+    }
+
+    private final Ledger ledger;
+    private final AccountStore store;
+    private final Coalescer coalescer;
+    private final Metrics metrics;
+    private final Consumer<Summary> onSummary;
+    private final BlockingQueue<Op>[] queues;
+    private final Queue<Done> done = new ConcurrentLinkedQueue<>();
+    private final Thread[] workers;
+    private volatile boolean running = true;
+
+    /** {@code onSummary} runs in each flush of {@code coalescer} in which batches finished. */
+    TransactionEngine(Ledger ledger, AccountStore store, Coalescer coalescer, Metrics metrics, int threads,
+                      Consumer<Summary> onSummary) {
+        this.ledger = ledger;
+        this.store = store;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.onSummary = onSummary;
+        coalescer.register(this::drain);
+        @SuppressWarnings("unchecked")
+        BlockingQueue<Op>[] qs = (BlockingQueue<Op>[]) new BlockingQueue<?>[threads];
+        queues = qs;
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<Op> queue = queues[i] = new LinkedBlockingQueue<>(CAPACITY / threads);
+            workers[i] = new Thread(() -> work(queue), "txn-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues an operation without blocking, for the EDT. If the queue is full
+     * the operation fails right away and its callback still runs.
+     */
+    void submit(Op op) {
+        op.queuedAt = System.nanoTime();
+        if (running && queueOf(op).offer(op)) return;
+        op.error = running ? "Too many pending transactions." : "The ledger is closed.";
+        finished(Collections.singletonList(op), 0);
+    }
+
+    /** Queues an operation, waiting for room; for producers off the EDT. */
+    void put(Op op) throws InterruptedException {
+        if (!running) throw new IllegalStateException("The ledger is closed.");
+        op.queuedAt = System.nanoTime();
+        queueOf(op).put(op);
+    }
+
+    int pending() {
+        int n = 0;
+        for (BlockingQueue<Op> q : queues) n += q.size();
+        return n;
+    }
+
+    /** Stops the workers once the queued operations have been applied. */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread w : workers) {
+            try {
+                w.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private BlockingQueue<Op> queueOf(Op op) {
+        int h = op.accNo.hashCode();
+        return queues[((h ^ (h >>> 16)) & 0x7fffffff) % queues.length];
+    }
+
+    private void work(BlockingQueue<Op> queue) {
+        List<Op> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            Op first;
+            try {
+                // Polled rather than taken, so close() never has to interrupt a journal flush.
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (first == null) continue;
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            long start = System.nanoTime();
+            apply(batch);
+            finished(new ArrayList<>(batch), System.nanoTime() - start);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Op> batch) {
+        Ledger.Batch b = ledger.batch();
+        for (Op op : batch) {
+            try {
+                if (op.type == Op.Type.OPEN) {
+                    b.open(op.accNo, op.name, op.amount);
+                    op.balance = op.amount;
+                } else {
+                    BankAccount acc = store.get(op.accNo);
+                    if (acc == null) {
+                        op.error = "Account not found.";
+                        continue;
+                    }
+                    if (op.type == Op.Type.DEPOSIT) b.deposit(acc, op.amount);
+                    else b.withdraw(acc, op.amount);
+                    op.balance = acc.getBalance();
+                }
+            } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException ex) {
+                // Refused, or not journaled: either way this one was not applied.
+                op.error = ex.getMessage();
+            }
+        }
+        try {
+            b.commit();
+        } catch (Ledger.NotDurableException ex) {
+            System.err.println(ex.getMessage());
+            for (Op op : batch) if (op.ok()) op.unsaved = true;
+        }
+    }
+
+    private void finished(List<Op> ops, long nanos) {
+        long now = System.nanoTime();
+        for (Op op : ops) {
+            Metrics.Kind kind = op.type == Op.Type.OPEN ? Metrics.Kind.CREATE
+                    : op.type == Op.Type.DEPOSIT ? Metrics.Kind.DEPOSIT : Metrics.Kind.WITHDRAW;
+            if (op.ok()) metrics.record(kind, now - op.queuedAt);
+            else metrics.error(kind);
+        }
+        done.add(new Done(ops, nanos));
+        coalescer.requestFlush();
+    }
+
+    private void drain() {
+        if (done.isEmpty()) return;
+        Summary summary = new Summary();
+        List<Op> callbacks = new ArrayList<>();
+        for (Done d; (d = done.poll()) != null; ) {
+            summary.batches++;
+            summary.nanos += d.nanos;
+            for (Op op : d.ops) {
+                if (op.ok()) {
+                    summary.applied++;
+                } else if (op.unsaved) {
+                    summary.unsaved++;
+                } else {
+                    summary.rejected++;
+                    summary.lastError = op.error;
+                }
+                if (op.onDone != null) callbacks.add(op);
+            }
+        }
+        onSummary.accept(summary);
+        for (Op op : callbacks) op.onDone.accept(op);
+    }
+}
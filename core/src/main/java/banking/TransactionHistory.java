@@ -0,0 +1,304 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every balance change of every account, kept per account in one growing
+ * {@code long[]} with no object per entry. An entry is three longs, 24 bytes:
+ * the time in milliseconds with the type in its low three bits, the amount,
+ * and the balance after the change. Within an account the times never go
+ * backwards, so a time range is two binary searches.
+ *
+ * <p>Entries are appended by {@link Ledger} while it holds the account's lock,
+ * so each account's entries are in the order its balance changed. Readers copy
+ * the slice they need with {@link #read}; the static accessors decode it.
+ *
+ * <p>Each checkpoint also writes the history up to it to a
+ * {@link HistorySnapshot}. From then on the entries it holds are read from that
+ * mapped file, an account at a time as they are asked for, and only the entries
+ * recorded since stay on the heap.
+ */
+final class TransactionHistory {
+    static final int OPEN = 1;
+    static final int DEPOSIT = 2;
+    static final int WITHDRAW = 3;
+    static final int TRANSFER_IN = 4;
+    static final int TRANSFER_OUT = 5;
+
+    static final int WORDS = 3;
+    private static final int TYPE_BITS = 3;
+
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();
+    /** Taken shared by readers and exclusively to swap in a new file and drop the entries it took over. */
+    private final ReadWriteLock baseLock = new ReentrantReadWriteLock();
+    private HistorySnapshot base;
+    /** Number of the last {@link #cut}. */
+    private volatile long epoch;
+    private volatile boolean complete = true;
+
+    /** One account's entries. Appends and reads synchronize on the log, which only the account's own traffic uses. */
+    private static final class Log {
+        long[] data = new long[WORDS];
+        int size;
+        long lastTime;
+        /** The cut that was current at the last append, and how many entries were recorded before it. */
+        long epoch;
+        int cut;
+
+        synchronized void append(long time, int type, long amount, long balance, long current) {
+            if (epoch != current) {
+                cut = size;
+                epoch = current;
+            }
+            if (time < lastTime) time = lastTime;
+            lastTime = time;
+            int at = size * WORDS;
+            if (at + WORDS > data.length) data = Arrays.copyOf(data, Math.max(at + WORDS, data.length + (data.length >> 1)));
+            data[at] = time << TYPE_BITS | type;
+            data[at + 1] = amount;
+            data[at + 2] = balance;
+            size++;
+        }
+
+        /** Number of entries recorded before cut {@code e}. */
+        synchronized int before(long e) {
+            return epoch < e ? size : cut;
+        }
+
+        /** Drops the entries recorded before cut {@code e}; true if none are left. */
+        synchronized boolean dropBefore(long e) {
+            int n = epoch < e ? size : cut;
+            data = Arrays.copyOfRange(data, n * WORDS, Math.max(size, n + 1) * WORDS);
+            size -= n;
+            cut = 0;
+            return size == 0;
+        }
+
+        /** Puts {@code older}'s entries in front of these. */
+        synchronized void prepend(Log older) {
+            long[] merged = new long[(older.size + size) * WORDS];
+            System.arraycopy(older.data, 0, merged, 0, older.size * WORDS);
+            System.arraycopy(data, 0, merged, older.size * WORDS, size * WORDS);
+            data = merged;
+            size += older.size;
+            cut += older.size;
+            lastTime = Math.max(lastTime, older.lastTime);
+        }
+
+        /** First entry at or after {@code time}. */
+        synchronized int lowerBound(long time) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (data[mid * WORDS] >>> TYPE_BITS < time) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    void record(String accNo, long time, int type, long amount, long balance) {
+        // compute, so that dropping an emptied log after a checkpoint cannot lose this entry.
+        logs.compute(accNo, (k, log) -> {
+            if (log == null) log = new Log();
+            log.append(time, type, amount, balance, epoch);
+            return log;
+        });
+    }
+
+    /** Number of entries the account has. */
+    int size(String accNo) {
+        baseLock.readLock().lock();
+        try {
+            Log log = logs.get(accNo);
+            int n = baseCount(baseIndex(accNo));
+            if (log == null) return n;
+            synchronized (log) {
+                return n + log.size;
+            }
+        } finally {
+            baseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entries with {@code from <= time < to}, as {@code {start, end}} entry
+     * positions for {@link #read}.
+     */
+    int[] range(String accNo, long from, long to) {
+        baseLock.readLock().lock();
+        try {
+            int i = baseIndex(accNo);
+            Log log = logs.get(accNo);
+            int start = baseLowerBound(i, from) + (log == null ? 0 : log.lowerBound(from));
+            int end = baseLowerBound(i, to) + (log == null ? 0 : log.lowerBound(to));
+            return new int[]{start, Math.max(start, end)};
+        } finally {
+            baseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies entries {@code [start, end)} of the account, clipped to what it
+     * has, into a new array of {@link #WORDS} longs per entry.
+     */
+    long[] read(String accNo, int start, int end) {
+        baseLock.readLock().lock();
+        try {
+            int i = baseIndex(accNo);
+            int saved = baseCount(i);
+            Log log = logs.get(accNo);
+            if (log == null) {
+                int s = Math.max(0, Math.min(start, saved));
+                int e = Math.max(s, Math.min(end, saved));
+                long[] out = new long[(e - s) * WORDS];
+                if (e > s) base.copy(base.start(i) + s, e - s, out, 0);
+                return out;
+            }
+            synchronized (log) {
+                int total = saved + log.size;
+                int s = Math.max(0, Math.min(start, total));
+                int e = Math.max(s, Math.min(end, total));
+                long[] out = new long[(e - s) * WORDS];
+                int fromBase = Math.max(0, Math.min(e, saved) - s);
+                if (fromBase > 0) base.copy(base.start(i) + s, fromBase, out, 0);
+                int logStart = Math.max(s, saved) - saved;
+                System.arraycopy(log.data, logStart * WORDS, out, fromBase * WORDS, (e - s - fromBase) * WORDS);
+                return out;
+            }
+        } finally {
+            baseLock.readLock().unlock();
+        }
+    }
+
+    /** Index of the account in the history file, or -1. Called with {@link #baseLock} held. */
+    private int baseIndex(String accNo) {
+        return base == null ? -1 : base.find(accNo);
+    }
+
+    private int baseCount(int i) {
+        return i < 0 ? 0 : (int) (base.start(i + 1) - base.start(i));
+    }
+
+    private int baseLowerBound(int i, long time) {
+        if (i < 0) return 0;
+        long first = base.start(i);
+        long lo = first;
+        long hi = base.start(i + 1);
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (base.word(mid, 0) >>> TYPE_BITS < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return (int) (lo - first);
+    }
+
+    /** Serves the entries in {@code saved} from it, in front of the ones recorded since. Called once at startup. */
+    void attach(HistorySnapshot saved) {
+        baseLock.writeLock().lock();
+        try {
+            base = saved;
+        } finally {
+            baseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the point a checkpoint is taken at and returns its number for
+     * {@link #writeSnapshot}. {@link Ledger} calls it with every account locked,
+     * so each entry is on one side of it.
+     */
+    long cut() { return ++epoch; }
+
+    /**
+     * Writes the saved history and every entry recorded before cut
+     * {@code cut} to {@code file}, then reads those entries from there and drops
+     * them from the heap.
+     */
+    void writeSnapshot(Path file, int journalId, long journalPosition, long cut) throws IOException {
+        List<String> accNos = new ArrayList<>();
+        for (Map.Entry<String, Log> e : logs.entrySet()) {
+            if (e.getValue().before(cut) > 0) accNos.add(e.getKey());
+        }
+        accNos.sort(null);
+        String[] keys = accNos.toArray(new String[0]);
+        long[][] added = new long[keys.length][];
+        for (int j = 0; j < keys.length; j++) {
+            Log log = logs.get(keys[j]);
+            synchronized (log) {
+                added[j] = Arrays.copyOf(log.data, log.before(cut) * WORDS);
+            }
+        }
+        HistorySnapshot previous;
+        baseLock.readLock().lock();
+        try {
+            previous = base;
+        } finally {
+            baseLock.readLock().unlock();
+        }
+        HistorySnapshot written = HistorySnapshot.open(
+                HistorySnapshot.write(file, journalId, journalPosition, previous, keys, added));
+
+        baseLock.writeLock().lock();
+        try {
+            base = written;
+            for (String accNo : keys) logs.computeIfPresent(accNo, (k, log) -> log.dropBefore(cut) ? null : log);
+        } finally {
+            baseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the history as missing entries from before the checkpoint until
+     * {@link #prependAll} adds them.
+     */
+    void loading() { complete = false; }
+
+    /** False while entries from before the checkpoint are still being read back from the journal. */
+    boolean isComplete() { return complete; }
+
+    /**
+     * Moves every entry of {@code older} in front of this history's entries
+     * for the same account. Used once at startup to add the history between the
+     * history file and the checkpoint under what was replayed and recorded since.
+     */
+    void prependAll(TransactionHistory older) {
+        for (Map.Entry<String, Log> e : older.logs.entrySet()) {
+            logs.compute(e.getKey(), (k, log) -> {
+                if (log == null) log = new Log();
+                log.prepend(e.getValue());
+                return log;
+            });
+        }
+        older.logs.clear();
+        complete = true;
+    }
+
+    static long time(long[] entries, int i) { return entries[i * WORDS] >>> TYPE_BITS; }
+
+    static int type(long[] entries, int i) { return (int) (entries[i * WORDS] & ((1 << TYPE_BITS) - 1)); }
+
+    static long amount(long[] entries, int i) { return entries[i * WORDS + 1]; }
+
+    static long balance(long[] entries, int i) { return entries[i * WORDS + 2]; }
+
+    static String typeName(int type) {
+        switch (type) {
+            case OPEN: return "Opened";
+            case DEPOSIT: return "Deposit";
+            case WITHDRAW: return "Withdraw";
+            case TRANSFER_IN: return "Transfer in";
+            case TRANSFER_OUT: return "Transfer out";
+            default: return "?";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package banking;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Point-in-time views of every balance for readers that walk many accounts,
+ * such as reports and exports, while deposits and withdrawals keep going.
+ *
+ * <p>Nothing is copied when a view opens. The view takes the current version
+ * number, and from then on {@link Ledger} saves the balance an account had
+ * before each change, tagged with the change's version, next to the live one.
+ * A view reads the live balance and then steps back through the saved ones
+ * newer than its own version. Writers never wait for readers: when no view is
+ * open a change costs two writes to its stripe's counter and one read of the
+ * open count, and otherwise also one version number and one saved balance.
+ *
+ * <p>A change is only given a version after its stripe is marked busy, and the
+ * balance is set before the mark is cleared. A view that opens waits for the
+ * stripes that are busy at that moment to finish their one change, so every
+ * change numbered at or below its version is fully applied and every later
+ * one has saved what it overwrote.
+ *
+ * <p>Saved balances are dropped when the oldest view still open no longer
+ * needs them, each time a view closes. A view that is never closed is closed
+ * by a {@link Cleaner} once it is unreachable.
+ */
+final class Versions {
+    /** Padding between stripe counters, in longs, so neighbouring stripes do not share a cache line. */
+    private static final int PAD = 8;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** One overwritten balance, newest first. */
+    private static final class Saved {
+        final long version;
+        final long balance;
+        /** Only ever cut to null when the rest is older than every open view. */
+        Saved older;
+
+        Saved(long version, long balance, Saved older) {
+            this.version = version;
+            this.balance = balance;
+            this.older = older;
+        }
+    }
+
+    /** The version an open view reads at; {@link Long#MIN_VALUE} while it is still being taken. */
+    private static final class Pin {
+        volatile long version = Long.MIN_VALUE;
+    }
+
+    private final AccountStore store;
+    private final AtomicLongArray busy;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private final Set<Pin> pins = ConcurrentHashMap.newKeySet();
+    private final Map<String, Saved> saved = new ConcurrentHashMap<>();
+    /** Accounts opened while a view was open, by the version they were opened at. */
+    private final Map<String, Long> opened = new ConcurrentHashMap<>();
+
+    Versions(AccountStore store, int stripes) {
+        this.store = store;
+        busy = new AtomicLongArray(stripes * PAD);
+    }
+
+    /** Marks the stripe busy. Called with the stripe held, before {@link #stamp()}. */
+    void enter(int stripe) {
+        int i = stripe * PAD;
+        busy.set(i, busy.get(i) + 1);
+    }
+
+    /** Clears the mark once the balances are set. */
+    void exit(int stripe) {
+        int i = stripe * PAD;
+        busy.setRelease(i, busy.get(i) + 1);
+    }
+
+    /** Version for a change on the entered stripes, or 0 if no view is open and nothing needs saving. */
+    long stamp() {
+        return open.get() == 0 ? 0 : clock.incrementAndGet();
+    }
+
+    /** Saves the balance a change overwrites; must come before the new balance is set. */
+    void changing(long version, String accNo, long before) {
+        if (version != 0) saved.compute(accNo, (k, older) -> new Saved(version, before, older));
+    }
+
+    /** Records an account being opened; must come before it is added to the store. */
+    void opening(long version, String accNo) {
+        if (version != 0) opened.put(accNo, version);
+    }
+
+    /** Opens a view of every balance as of now. Close it when done. */
+    View view() {
+        Pin pin = new Pin();
+        open.incrementAndGet();
+        pins.add(pin);
+        long version = clock.get();
+        pin.version = version;
+        for (int i = 0; i < busy.length(); i += PAD) {
+            long mark = busy.get(i);
+            if ((mark & 1) == 0) continue;
+            while (busy.get(i) == mark) Thread.onSpinWait();
+        }
+        return new View(version, pin);
+    }
+
+    private void release(Pin pin) {
+        pins.remove(pin);
+        open.decrementAndGet();
+        reclaim();
+    }
+
+    /** Drops every saved balance that no open view can still ask for. */
+    private void reclaim() {
+        // A view that pins itself after this read reads at this version or later.
+        long oldest = clock.get();
+        for (Pin pin : pins) oldest = Math.min(oldest, pin.version);
+        for (Map.Entry<String, Saved> e : saved.entrySet()) {
+            Saved head = e.getValue();
+            if (head.version <= oldest) {
+                saved.remove(e.getKey(), head);
+                continue;
+            }
+            for (Saved s = head; s.older != null; s = s.older) {
+                if (s.older.version <= oldest) {
+                    s.older = null;
+                    break;
+                }
+            }
+        }
+        for (Map.Entry<String, Long> e : opened.entrySet())
+            if (e.getValue() <= oldest) opened.remove(e.getKey(), e.getValue());
+    }
+
+    /**
+     * A consistent picture of the accounts as of one version: the accounts
+     * opened by then, each with its balance at that point, including both sides
+     * of every transfer or neither.
+     */
+    final class View implements AutoCloseable {
+        private final long version;
+        private final Cleaner.Cleanable cleanable;
+
+        private View(long version, Pin pin) {
+            this.version = version;
+            // The action must not reach the view itself, or the view would never become unreachable.
+            Versions versions = Versions.this;
+            cleanable = CLEANER.register(this, () -> versions.release(pin));
+        }
+
+        /** Whether the account had been opened when the view was taken. */
+        boolean includes(String accNo) {
+            Long at = opened.get(accNo);
+            return at == null || at <= version;
+        }
+
+        /** The account's balance when the view was taken. */
+        long balanceOf(BankAccount acc) {
+            return balanceOf(acc.getAccNo(), acc.getBalance());
+        }
+
+        /** The balance when the view was taken, given the {@code current} one read just before. */
+        long balanceOf(String accNo, long current) {
+            long balance = current;
+            for (Saved s = saved.get(accNo); s != null && s.version > version; s = s.older) balance = s.balance;
+            return balance;
+        }
+
+        /** Number of accounts in the view. */
+        int size() {
+            int count = store.idCount();
+            int later = 0;
+            // Ids are handed out in order, so the accounts the count covers are exactly those below it.
+            for (Map.Entry<String, Long> e : opened.entrySet()) {
+                if (e.getValue() <= version) continue;
+                int id = store.idOf(e.getKey());
+                if (id >= 0 && id < count) later++;
+            }
+            return count - later;
+        }
+
+        /**
+         * Current position in the store's sorted index of the view's row
+         * {@code row}: the row plus the accounts opened since the view that sort
+         * at or before it.
+         */
+        int positionOf(int row) {
+            List<Integer> later = new ArrayList<>();
+            for (Map.Entry<String, Long> e : opened.entrySet()) {
+                if (e.getValue() <= version) continue;
+                int rank = store.rankOf(e.getKey());
+                if (rank >= 0) later.add(rank);
+            }
+            Collections.sort(later);
+            int pos = row;
+            for (int rank : later) {
+                if (rank > pos) break;
+                pos++;
+            }
+            return pos;
+        }
+
+        /** Like {@link AccountStore#forEachRow}, with the accounts and balances as of the view. */
+        void forEachRow(AccountStore.RowVisitor visitor) throws IOException {
+            store.forEachRow((accNo, name, balance) -> {
+                if (includes(accNo)) visitor.row(accNo, name, balanceOf(accNo, balance));
+            });
+        }
+
+        @Override
+        public void close() { cleanable.clean(); }
+    }
+}
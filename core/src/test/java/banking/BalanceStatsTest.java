@@ -0,0 +1,87 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceStatsTest {
+    /** As many accounts as a top list keeps candidates for. */
+    private static final int CANDIDATES = 256;
+
+    /** A ledger over {@code balances.length} accounts loaded behind its back, with the stats rebuilt. */
+    private static Ledger loaded(long... balances) throws InterruptedException {
+        MapAccountStore store = new MapAccountStore();
+        for (int i = 0; i < balances.length; i++) store.create(String.format("A%05d", i), "n", balances[i], false);
+        Ledger ledger = new Ledger(store, null);
+        ledger.rebuildStats();
+        awaitReady(ledger);
+        return ledger;
+    }
+
+    private static void awaitReady(Ledger ledger) throws InterruptedException {
+        for (int i = 0; i < 500 && !ledger.stats().isReady(); i++) Thread.sleep(10);
+        assertTrue(ledger.stats().isReady());
+    }
+
+    private static long[] ascending(int n) {
+        long[] balances = new long[n];
+        for (int i = 0; i < n; i++) balances[i] = i * 100L;
+        return balances;
+    }
+
+    @Test
+    void countsAndTotalsAfterARebuild() throws InterruptedException {
+        Ledger ledger = loaded(0, 1_000_00, 50_000_00, 2_000_000_00L);
+        BalanceStats stats = ledger.stats();
+        assertEquals(4, stats.accounts());
+        assertEquals(2_051_000_00L, stats.total());
+        assertArrayEquals(new long[]{1, 1, 1, 0, 1}, stats.bands());
+    }
+
+    @Test
+    void givesEveryCandidateAfterARebuild() throws InterruptedException {
+        Ledger ledger = loaded(ascending(1000));
+        List<BalanceStats.Leader> largest = ledger.largest(CANDIDATES);
+        assertNotNull(largest);
+        assertEquals(CANDIDATES, largest.size());
+        assertEquals(99_900, largest.get(0).balance);
+        assertEquals((1000 - CANDIDATES) * 100L, largest.get(CANDIDATES - 1).balance);
+
+        List<BalanceStats.Leader> smallest = ledger.smallest(CANDIDATES);
+        assertNotNull(smallest);
+        assertEquals(CANDIDATES, smallest.size());
+        assertEquals(0, smallest.get(0).balance);
+        assertEquals((CANDIDATES - 1) * 100L, smallest.get(CANDIDATES - 1).balance);
+    }
+
+    @Test
+    void givesEveryCandidateWhenBalancesTie() throws InterruptedException {
+        Ledger ledger = loaded(new long[1000]);
+        List<BalanceStats.Leader> largest = ledger.largest(CANDIDATES);
+        assertNotNull(largest);
+        assertEquals(CANDIDATES, largest.size());
+        assertEquals(0, largest.get(CANDIDATES - 1).balance);
+    }
+
+    @Test
+    void followsChangesAfterARebuild() throws InterruptedException {
+        Ledger ledger = loaded(ascending(1000));
+        ledger.deposit(ledger.store().get("A00000"), 1_000_000);
+        ledger.withdraw(ledger.store().get("A00999"), 99_900);
+
+        List<BalanceStats.Leader> largest = ledger.largest(2);
+        assertEquals("A00000", largest.get(0).accNo);
+        assertEquals(1_000_000, largest.get(0).balance);
+        assertEquals("A00998", largest.get(1).accNo);
+
+        List<BalanceStats.Leader> smallest = ledger.smallest(2);
+        assertEquals("A00999", smallest.get(0).accNo);
+        assertEquals("A00001", smallest.get(1).accNo);
+        assertNotNull(ledger.largest(CANDIDATES));
+    }
+}
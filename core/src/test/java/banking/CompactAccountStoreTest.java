@@ -0,0 +1,78 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompactAccountStoreTest {
+    @Test
+    void keepsAccountNumberOrderAcrossMerges() {
+        CompactAccountStore store = new CompactAccountStore();
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(7);
+        // Enough accounts for the recent run to be merged into the main order a few times.
+        for (int i = 0; i < 5000; i++) {
+            String accNo = String.format("A%08d", random.nextInt(100_000_000));
+            if (store.contains(accNo)) continue;
+            store.create(accNo, "Name " + i, i);
+            expected.add(accNo);
+        }
+        Collections.sort(expected);
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < expected.size(); i += 37) {
+            assertEquals(expected.get(i), store.accNoAt(i));
+            assertEquals(expected.get(i), store.accountAt(i).getAccNo());
+            assertEquals(i, store.rankOf(expected.get(i)));
+        }
+        List<String> walked = new ArrayList<>();
+        store.forEachAccNoInOrder(walked::add);
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void looksUpAccountsAndKeepsTheirBalances() {
+        CompactAccountStore store = new CompactAccountStore();
+        store.create("B", "Ñino", 500);
+        BankAccount a = store.create("A", "Ann", 100);
+        a.setBalance(250);
+        assertEquals(250, store.get("A").getBalance());
+        assertEquals("Ñino", store.get("B").getName());
+        assertEquals(store.get("A"), store.accountAt(0));
+        assertNull(store.get("C"));
+        assertEquals(1, store.idOf("A"));
+        assertThrows(IllegalArgumentException.class, () -> store.create("A", "again", 0));
+        assertThrows(IllegalArgumentException.class, () -> store.checkCreate("B", "again"));
+    }
+
+    @Test
+    void everyCountedPositionHasAnAccountWhileAccountsAreCreated() throws InterruptedException {
+        CompactAccountStore store = new CompactAccountStore();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    int n = store.size();
+                    if (n > 0) store.accountAt(n - 1).getAccNo();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) store.create(String.format("A%06d", 20_000 - i), "n", 0);
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+        assertEquals(20_000, store.size());
+    }
+}
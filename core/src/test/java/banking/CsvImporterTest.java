@@ -0,0 +1,70 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvImporterTest {
+    @TempDir
+    Path dir;
+
+    private Path csv(String text) throws IOException {
+        return Files.writeString(dir.resolve("import.csv"), text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void appliesGoodRowsAndReportsTheRest() throws Exception {
+        MapAccountStore store = new MapAccountStore();
+        List<String> created = new ArrayList<>();
+        store.addListener(new AccountStore.Listener() {
+            @Override
+            public void accountCreated(BankAccount acc) { created.add(acc.getAccNo()); }
+
+            @Override
+            public void balanceChanged(BankAccount acc) {}
+
+            @Override
+            public void accountsChanged() {}
+        });
+        Ledger ledger = new Ledger(store, null);
+        CsvImporter.Result r = new CsvImporter(ledger, store).run(csv(
+                "accNo,name,balance\nA1,\"Cruz, Juan\",100.50\nA2,,5\nA1,Again,0\nA3,Ana,-1\n"),
+                CsvImporter.Kind.ACCOUNTS, (read, total, applied, rejected) -> {});
+
+        assertEquals(1, r.applied);
+        assertEquals(3, r.rejected);
+        assertEquals("line 3: Account number and name are required.", r.rejects.get(0));
+        assertEquals("line 5: Initial balance must be a non-negative number.", r.rejects.get(2));
+        assertNull(r.stopped);
+        assertEquals("Cruz, Juan", store.get("A1").getName());
+        assertEquals(10050, store.get("A1").getBalance());
+        assertEquals(List.of("A1"), created);
+    }
+
+    @Test
+    void stopsWhenTheLedgerRefusesEveryChange() throws Exception {
+        MapAccountStore store = new MapAccountStore();
+        Journal journal = Journal.open(dir.resolve("ledger.journal"), null, e -> {});
+        Ledger ledger = new Ledger(store, journal);
+        journal.close();
+        CsvImporter.Result r = new CsvImporter(ledger, store).run(csv("A1,Ann,0\nA2,Ben,0\n"),
+                CsvImporter.Kind.ACCOUNTS, (read, total, applied, rejected) -> {});
+
+        assertEquals("Journal is closed.", r.stopped);
+        assertEquals(0, r.applied);
+        assertEquals(1, r.rejected);
+        assertEquals(List.of("line 1: Journal is closed."), r.rejects);
+        assertFalse(r.cancelled);
+        assertNull(store.get("A1"));
+    }
+}
@@ -0,0 +1,83 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    /** The replayed records, one line each; replay reuses a single Entry, so it is copied out. */
+    private List<String> replay() throws IOException {
+        List<String> seen = new ArrayList<>();
+        Journal journal = Journal.open(dir.resolve("ledger.journal"), null, e -> seen.add(
+                e.type + " " + e.timestamp + " " + e.accNo + " " + e.name + " " + e.toAccNo
+                        + " " + e.amount + " " + e.balance + " " + e.toBalance));
+        journal.close();
+        return seen;
+    }
+
+    @Test
+    void replaysEveryRecordWithItsFields() throws IOException {
+        Journal journal = Journal.open(dir.resolve("ledger.journal"), null, e -> {});
+        journal.appendCreate(1, "A1", "Juan Dela Cruz", 10000);
+        journal.appendCreate(2, "A2", "Señora Ñ", 0);
+        journal.appendDeposit(3, "A1", 250, 10250);
+        journal.appendWithdraw(4, "A1", 50, 10200);
+        long end = journal.appendTransfer(5, "A1", "A2", 200, 10000, 200);
+        journal.awaitDurable(end);
+        journal.close();
+
+        assertEquals(List.of(
+                "1 1 A1 Juan Dela Cruz null 0 10000 0",
+                "1 2 A2 Señora Ñ null 0 0 0",
+                "2 3 A1 null null 250 10250 0",
+                "3 4 A1 null null 50 10200 0",
+                "4 5 A1 null A2 200 10000 200"), replay());
+    }
+
+    @Test
+    void stopsAtATornRecordAndWritesOverIt() throws IOException {
+        Journal journal = Journal.open(dir.resolve("ledger.journal"), null, e -> {});
+        journal.appendCreate(1, "A1", "Ann", 0);
+        long before = journal.appendDeposit(2, "A1", 100, 100);
+        long end = journal.appendDeposit(3, "A1", 100, 200);
+        journal.awaitDurable(end);
+        journal.close();
+
+        // Flip a payload byte of the last record so its CRC no longer matches.
+        try (FileChannel ch = FileChannel.open(Snapshot.latest(dir.resolve("ledger.journal")),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, before + 8);
+            b.put(0, (byte) (b.get(0) ^ 0x55)).rewind();
+            ch.write(b, before + 8);
+        }
+        assertEquals(2, replay().size());
+
+        journal = Journal.open(dir.resolve("ledger.journal"), null, e -> {});
+        assertEquals(before, journal.position());
+        journal.awaitDurable(journal.appendWithdraw(4, "A1", 30, 70));
+        journal.close();
+
+        List<String> seen = replay();
+        assertEquals(3, seen.size());
+        assertEquals("3 4 A1 null null 30 70 0", seen.get(2));
+    }
+
+    @Test
+    void startsEmptyWhenNew() throws IOException {
+        assertEquals(List.of(), replay());
+        assertEquals(List.of(), replay());
+    }
+}
@@ -0,0 +1,105 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MapAccountStoreTest {
+    @TempDir
+    Path dir;
+
+    /** A store started from a checkpoint of {@code accNos}, sorted, each with a balance of its index. */
+    private MapAccountStore checkpointed(String... accNos) throws IOException {
+        Path file = dir.resolve("ledger.snapshot");
+        Snapshot.write(file, 1, 0, accNos.length, new Snapshot.Rows() {
+            @Override
+            public int textLength(int column, int k) {
+                return text(column, k).length;
+            }
+
+            @Override
+            public void putText(int column, int k, ByteBuffer out) {
+                out.put(text(column, k));
+            }
+
+            @Override
+            public long balance(int k) {
+                return k;
+            }
+
+            private byte[] text(int column, int k) {
+                return (column == 0 ? accNos[k] : "Name " + accNos[k]).getBytes(StandardCharsets.UTF_8);
+            }
+        });
+        MapAccountStore store = new MapAccountStore();
+        store.attach(Snapshot.open(Snapshot.latest(file)));
+        return store;
+    }
+
+    /** Positions, ranks and the in-order walks all agree with {@code expected} sorted. */
+    private static void assertOrder(AccountStore store, List<String> expected) {
+        Collections.sort(expected);
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), store.accNoAt(i), "accNoAt " + i);
+            assertEquals(expected.get(i), store.accountAt(i).getAccNo(), "accountAt " + i);
+            assertEquals(i, store.rankOf(expected.get(i)));
+        }
+        List<String> walked = new ArrayList<>();
+        store.forEachAccNoInOrder(walked::add);
+        assertEquals(expected, walked);
+        assertThrows(IndexOutOfBoundsException.class, () -> store.accountAt(expected.size()));
+    }
+
+    @Test
+    void mergesCheckpointedAndNewAccountsInOrder() throws IOException {
+        MapAccountStore store = checkpointed("B02", "B04", "B06", "B08");
+        List<String> expected = new ArrayList<>(List.of("B02", "B04", "B06", "B08"));
+        for (String accNo : new String[]{"B05", "A00", "B09", "B03", "B01", "C00", "B07"}) {
+            store.create(accNo, "New " + accNo, 0);
+            expected.add(accNo);
+            assertOrder(store, expected);
+        }
+    }
+
+    @Test
+    void ordersOnlyCheckpointedOrOnlyNewAccounts() throws IOException {
+        assertOrder(checkpointed("A", "B", "C"), new ArrayList<>(List.of("A", "B", "C")));
+
+        MapAccountStore store = new MapAccountStore();
+        for (String accNo : new String[]{"C", "A", "B"}) store.create(accNo, "n", 0);
+        assertOrder(store, new ArrayList<>(List.of("A", "B", "C")));
+    }
+
+    @Test
+    void ranksAbsentAccountsAcrossBothParts() throws IOException {
+        MapAccountStore store = checkpointed("B", "D");
+        store.create("C", "n", 0);
+        assertEquals(-1, store.rankOf("A"));
+        assertEquals(-3, store.rankOf("CC"));
+        assertEquals(-4, store.rankOf("E"));
+        assertEquals(3, store.prefixRange("")[1]);
+    }
+
+    @Test
+    void readsCheckpointedAccountsLazilyAndRejectsDuplicates() throws IOException {
+        MapAccountStore store = checkpointed("A", "B");
+        assertEquals("Name B", store.get("B").getName());
+        assertEquals(1, store.get("B").getBalance());
+        assertNull(store.get("C"));
+        assertThrows(IllegalArgumentException.class, () -> store.create("A", "again", 0));
+        store.create("C", "n", 0);
+        assertThrows(IllegalArgumentException.class, () -> store.create("C", "again", 0));
+    }
+}
@@ -0,0 +1,61 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    @Test
+    void parsesWholeAndFractionalPesos() {
+        assertEquals(1200, Money.parseCents("12"));
+        assertEquals(1250, Money.parseCents("12.5"));
+        assertEquals(1205, Money.parseCents("12.05"));
+        assertEquals(1, Money.parseCents("0.01"));
+        assertEquals(50, Money.parseCents(".5"));
+        assertEquals(1200, Money.parseCents("12."));
+    }
+
+    @Test
+    void acceptsSignsAndSurroundingWhitespace() {
+        assertEquals(125050, Money.parseCents(" 1,250.5 "));
+        assertEquals(-305, Money.parseCents("-3.05"));
+        assertEquals(700, Money.parseCents("+7"));
+        assertEquals(900, Money.parseCents("\t9\n"));
+    }
+
+    @Test
+    void acceptsCommasOnlyBetweenThousands() {
+        assertEquals(123456789, Money.parseCents("1,234,567.89"));
+        assertEquals(100000000, Money.parseCents("1,000,000"));
+        assertEquals(99900, Money.parseCents("999"));
+        for (String bad : new String[]{"12,34", "1,2345", ",123", "1,,234", "1234,567", "1,234,", "1,234.5,6"})
+            assertThrows(NumberFormatException.class, () -> Money.parseCents(bad), bad);
+    }
+
+    @Test
+    void rejectsMoreThanTwoDecimalsInsteadOfRounding() {
+        assertThrows(NumberFormatException.class, () -> Money.parseCents("1.999"));
+        assertThrows(NumberFormatException.class, () -> Money.parseCents("0.001"));
+    }
+
+    @Test
+    void rejectsWhatIsNotAnAmount() {
+        for (String bad : new String[]{"", "   ", "-", "+", ".", "abc", "1e5", "1.2.3", "12a", "--1", "₱12"})
+            assertThrows(NumberFormatException.class, () -> Money.parseCents(bad), bad);
+    }
+
+    @Test
+    void acceptsUpToTheLargestLongAndRejectsMore() {
+        assertEquals(Long.MAX_VALUE, Money.parseCents("92,233,720,368,547,758.07"));
+        assertEquals(-Long.MAX_VALUE, Money.parseCents("-92233720368547758.07"));
+        assertThrows(NumberFormatException.class, () -> Money.parseCents("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parseCents("100000000000000000"));
+    }
+
+    @Test
+    void formatsWithPesoSignAndGrouping() {
+        assertEquals("₱1,234,567.89", Money.format(123456789));
+        assertEquals("-₱0.50", Money.format(-50));
+    }
+}
@@ -0,0 +1,45 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PesoFormatterTest {
+    private final PesoFormatter f = new PesoFormatter();
+
+    @Test
+    void formatsSmallAmounts() {
+        assertEquals("₱0.00", f.format(0).toString());
+        assertEquals("₱0.05", f.format(5).toString());
+        assertEquals("₱0.50", f.format(50).toString());
+        assertEquals("₱9.99", f.format(999).toString());
+    }
+
+    @Test
+    void groupsThousands() {
+        assertEquals("₱999.00", f.format(99900).toString());
+        assertEquals("₱1,000.00", f.format(100000).toString());
+        assertEquals("₱12,345.67", f.format(1234567).toString());
+        assertEquals("₱1,000,000.01", f.format(100000001).toString());
+    }
+
+    @Test
+    void formatsNegativeAmounts() {
+        assertEquals("-₱0.05", f.format(-5).toString());
+        assertEquals("-₱1,234.50", f.format(-123450).toString());
+    }
+
+    @Test
+    void formatsTheLongLimits() {
+        assertEquals("₱92,233,720,368,547,758.07", f.format(Long.MAX_VALUE).toString());
+        assertEquals("-₱92,233,720,368,547,758.08", f.format(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    void reusesItsBufferWithoutLeftovers() {
+        f.format(Long.MIN_VALUE);
+        f.format(7);
+        assertEquals("₱0.07", new String(f.chars(), f.offset(), f.length()));
+        assertEquals("x ₱0.07", f.appendTo(new StringBuilder("x ")).toString());
+    }
+}
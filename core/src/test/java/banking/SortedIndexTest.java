@@ -0,0 +1,94 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SortedIndexTest {
+    private static String accNo(int i) {
+        return String.format("A%05d", i);
+    }
+
+    /** Every position selects the right account and every account ranks at its position. */
+    private static void assertConsistent(SortedIndex index, List<String> expected) {
+        Collections.sort(expected);
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), index.get(i).getAccNo());
+            assertEquals(i, index.rank(expected.get(i)));
+        }
+        List<String> walked = new ArrayList<>();
+        index.forEach(acc -> walked.add(acc.getAccNo()));
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void staysOrderedWhenInsertedAscending() {
+        SortedIndex index = new SortedIndex();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            index.insert(new BankAccount(accNo(i), "n", 0));
+            expected.add(accNo(i));
+        }
+        assertConsistent(index, expected);
+    }
+
+    @Test
+    void staysOrderedWhenInsertedDescending() {
+        SortedIndex index = new SortedIndex();
+        List<String> expected = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            index.insert(new BankAccount(accNo(i), "n", 0));
+            expected.add(accNo(i));
+        }
+        assertConsistent(index, expected);
+    }
+
+    @Test
+    void staysOrderedAcrossDoubleRotations() {
+        SortedIndex index = new SortedIndex();
+        List<String> expected = new ArrayList<>();
+        // Zig-zag inserts force left-right and right-left rotations.
+        for (int lo = 0, hi = 999; lo <= hi; lo++, hi--) {
+            index.insert(new BankAccount(accNo(lo * 2), "n", 0));
+            expected.add(accNo(lo * 2));
+            if (lo != hi) {
+                index.insert(new BankAccount(accNo(hi * 2), "n", 0));
+                expected.add(accNo(hi * 2));
+            }
+        }
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) shuffled.add(i * 2 + 1);
+        Collections.shuffle(shuffled, new Random(42));
+        for (int i : shuffled) {
+            index.insert(new BankAccount(accNo(i), "n", 0));
+            expected.add(accNo(i));
+        }
+        assertConsistent(index, expected);
+    }
+
+    @Test
+    void ranksAbsentKeysByInsertionPoint() {
+        SortedIndex index = new SortedIndex();
+        for (String accNo : new String[]{"B", "D", "F"}) index.insert(new BankAccount(accNo, "n", 0));
+        assertEquals(-1, index.rank("A"));
+        assertEquals(-2, index.rank("C"));
+        assertEquals(-3, index.rank("E"));
+        assertEquals(-4, index.rank("G"));
+    }
+
+    @Test
+    void rejectsDuplicatesAndPositionsOutOfRange() {
+        SortedIndex index = new SortedIndex();
+        index.insert(new BankAccount("A", "n", 0));
+        assertThrows(IllegalArgumentException.class, () -> index.insert(new BankAccount("A", "m", 0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(-1));
+    }
+}